@@ -0,0 +1,62 @@
+package xin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static xin.Parsec.many;
+import static xin.Parsec.regex;
+import static xin.Parsec.spaces;
+
+/**
+ * parse throughput of one shared grammar, on one thread and on as many threads as there are cpus.
+ * each parse takes a {@link ParseContext} from the shared pool and gives it back, so with no contention
+ * the throughput per thread stays about the same
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    private final Parsec<List<String>> words = many(regex("\\w+").skip(spaces()));
+    private final String text = String.join(" ", Collections.nCopies(20, "word"));
+    private final ParseOptions limited = ParseOptions.defaults().withMaxSteps(1_000_000);
+
+    @Benchmark
+    @Threads(1)
+    public List<String> parse_1_thread() {
+        return words.parse(text);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<String> parse_all_threads() {
+        return words.parse(text);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<String> parse_limited_1_thread() {
+        return words.parse(text, limited);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<String> parse_limited_all_threads() {
+        return words.parse(text, limited);
+    }
+}
@@ -0,0 +1,252 @@
+package xin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * a parser remembering its results by input, created by {@link Parsec#cached(Parsec, int)}, for the same
+ * small inputs parsed again and again from many threads.
+ * <p>
+ * the cache is a least recently used map under a lock. a large one is split in segments, each an lru
+ * map of at least {@link #MIN_SEGMENT_ENTRIES} under its own lock, so together they never hold more than
+ * maxEntries inputs: eviction is then lru within a segment, which at that size is close to lru overall. threads missing on the same input at the same time share one
+ * parse: the first one parses, the others wait for its result. inputs longer than maxInputLength are
+ * parsed without being cached, nor kept alive as keys.
+ * <p>
+ * a cached result is handed to every caller, so it must not be mutated. exceptions other than a
+ * failed parse, e.g. a {@link ParseLimitExceededException}, are never cached
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class CachingParser<T> {
+
+    static final int MIN_SEGMENT_ENTRIES = 64;
+
+    private final Parsec<T> parsec;
+    private final int maxEntries;
+    private final int maxInputLength;
+    private final boolean cacheFailures;
+
+    private final Segment<T>[] segments;
+    private final ConcurrentHashMap<String, CompletableFuture<Parsec.Value<T>>> inflight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * @param maxInputLength longer inputs are not cached
+     * @param cacheFailures whether a failed parse is cached too, and thrown again on a hit
+     */
+    @SuppressWarnings("unchecked")
+    public CachingParser(Parsec<T> parsec, int maxEntries, int maxInputLength, boolean cacheFailures) {
+        Parsec._check(maxEntries > 0, "maxEntries must be greater than zero");
+        Parsec._check(maxInputLength >= 0, "maxInputLength must not be negative");
+        this.parsec = parsec;
+        this.maxEntries = maxEntries;
+        this.maxInputLength = maxInputLength;
+        this.cacheFailures = cacheFailures;
+
+        // up to 16 segments sharing maxEntries exactly, only as many as keep a real lru capacity each
+        final int n = Math.max(1, Math.min(16, Integer.highestOneBit(maxEntries / MIN_SEGMENT_ENTRIES)));
+        this.segments = (Segment<T>[]) new Segment<?>[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment<>(maxEntries / n + (i < maxEntries % n ? 1 : 0), evictions);
+        }
+    }
+
+    public T parse(String input) {
+        final Parsec.Value<T> v = result(input);
+        if (!v.status) {
+            throw Parsec._failed(input, v.index, v.expected);
+        }
+        return v.value;
+    }
+
+    private Parsec.Value<T> result(String input) {
+        if (input.length() > maxInputLength) {
+            bypassed.increment();
+            return ParseContext.run(parsec, input);
+        }
+
+        final Segment<T> segment = segment(input);
+        Parsec.Value<T> v = segment.get(input);
+        if (v != null) {
+            hits.increment();
+            return v;
+        }
+
+        misses.increment();
+        final CompletableFuture<Parsec.Value<T>> mine = new CompletableFuture<>();
+        final CompletableFuture<Parsec.Value<T>> running = inflight.putIfAbsent(input, mine);
+        if (running != null) {
+            collapsed.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            // cached by a parse that finished between the lookup and putIfAbsent
+            v = segment.get(input);
+            if (v == null) {
+                v = ParseContext.run(parsec, input);
+                if (v.status || cacheFailures) {
+                    segment.put(input, v);
+                }
+            }
+            mine.complete(v);
+            return v;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(input, mine);
+        }
+    }
+
+    private Segment<T> segment(String input) {
+        final int h = input.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    public void clear() {
+        for (Segment<T> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // metrics
+    ///////////////////////////////////////////////////////////////////////////
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * lookups not found in the cache, including the ones collapsed into another thread's parse
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * misses which waited for the parse of the same input by another thread instead of parsing
+     */
+    public long collapsed() {
+        return collapsed.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * inputs too long to be cached
+     */
+    public long bypassed() {
+        return bypassed.sum();
+    }
+
+    public double hitRatio() {
+        final long hits = hits();
+        final long total = hits + misses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return maxEntries;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingParser{" +
+                "size=" + size() +
+                ", capacity=" + capacity() +
+                ", hits=" + hits() +
+                ", misses=" + misses() +
+                ", collapsed=" + collapsed() +
+                ", evictions=" + evictions() +
+                ", bypassed=" + bypassed() +
+                '}';
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * an access ordered map dropping its least recently used entry past capacity. a lock rather than
+     * synchronized, so a virtual thread waiting on it does not pin its carrier
+     */
+    private static final class Segment<T> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Parsec.Value<T>> map;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.map = new LinkedHashMap<String, Parsec.Value<T>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Parsec.Value<T>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Parsec.Value<T> get(String input) {
+            lock.lock();
+            try {
+                return map.get(input);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String input, Parsec.Value<T> value) {
+            lock.lock();
+            try {
+                map.put(input, value);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                map.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return map.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package xin;
+
+/**
+ * cooperative cancellation of a parse, see {@link ParseOptions#withCancellation(CancellationToken)}.
+ * cancel may be called from any thread, the parse notices it within a few thousand steps
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
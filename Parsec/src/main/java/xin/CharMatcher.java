@@ -0,0 +1,31 @@
+package xin;
+
+import java.util.function.Predicate;
+
+/**
+ * one char accepted by a predicate, behind {@link Parsec#charMatcher} and the char classes like
+ * {@link Parsec#digit()}, which describe themselves so the lint and the generator can see into them
+ */
+final class CharMatcher extends Grammar.Rule<Character> {
+
+    private final Predicate<Character> predicate;
+    private final String expect;
+
+    CharMatcher(Grammar.Node node, Predicate<Character> predicate, String expect) {
+        super(node);
+        this.predicate = predicate;
+        this.expect = expect;
+    }
+
+    @Override
+    public Parsec.Value<Character> _parse(String input, int index) {
+        if (index < input.length() && predicate.test(input.charAt(index))) {
+            return Parsec.Value.success(index + 1, input.charAt(index));
+        } else {
+            if (index >= input.length()) {
+                ParseContext.hitEnd();
+            }
+            return Parsec.Value.failure(index, expect);
+        }
+    }
+}
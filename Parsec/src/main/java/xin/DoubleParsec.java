@@ -0,0 +1,237 @@
+package xin;
+
+import java.util.Objects;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * a Parsec producing a primitive double, the boxed {@link #_parse} is only used when mixed with plain Parsecs
+ */
+@SuppressWarnings("unused")
+@FunctionalInterface
+public interface DoubleParsec extends Parsec<Double> {
+
+    DoubleValue _parseDouble(String input, int index);
+
+    @Override
+    default Value<Double> _parse(String input, int index) {
+        final DoubleValue v = _parseDouble(input, index);
+        if (v.status) {
+            return Value.success(v.index, v.value);
+        } else {
+            return Value.failure(v.index, v.expected);
+        }
+    }
+
+    default double parseDouble(String input) {
+        final DoubleValue res = _parseDouble(input, 0);
+        if (!res.status) {
+            throw Parsec._failed(input, res.index, res.expected);
+        }
+
+        return res.value;
+    }
+
+    @Override
+    default DoubleParsec skip(Parsec<?> parsec) {
+        final DoubleParsec self = this;
+        return new Grammar.DoubleRule(Grammar.sequence("skip", self, parsec)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                final DoubleValue res = self._parseDouble(input, index);
+                if (!res.status) {
+                    return res;
+                }
+
+                final Value<?> end = parsec._parse(input, res.index);
+                if (end.status) {
+                    return DoubleValue.success(end.index, res.value);
+                } else {
+                    return DoubleValue.failure(end.index, end.expected);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // primitive map
+    ///////////////////////////////////////////////////////////////////////////
+
+    default IntParsec mapToInt(DoubleToIntFunction transform) {
+        final DoubleParsec self = this;
+        return new Grammar.IntRule(Grammar.wrap("mapToInt", self)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                final DoubleValue v = self._parseDouble(input, index);
+                if (v.status) {
+                    return IntParsec.IntValue.success(v.index, transform.applyAsInt(v.value));
+                } else {
+                    return IntParsec.IntValue.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    default LongParsec mapToLong(DoubleToLongFunction transform) {
+        final DoubleParsec self = this;
+        return new Grammar.LongRule(Grammar.wrap("mapToLong", self)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                final DoubleValue v = self._parseDouble(input, index);
+                if (v.status) {
+                    return LongParsec.LongValue.success(v.index, transform.applyAsLong(v.value));
+                } else {
+                    return LongParsec.LongValue.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    default DoubleParsec mapToDouble(DoubleUnaryOperator transform) {
+        final DoubleParsec self = this;
+        return new Grammar.DoubleRule(Grammar.wrap("mapToDouble", self)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                final DoubleValue v = self._parseDouble(input, index);
+                if (v.status) {
+                    return DoubleValue.success(v.index, transform.applyAsDouble(v.value));
+                } else {
+                    return v;
+                }
+            }
+        };
+    }
+
+    default <R> Parsec<R> mapToObj(DoubleFunction<R> transform) {
+        final DoubleParsec self = this;
+        return new Grammar.Rule<R>(Grammar.wrap("mapToObj", self)) {
+            @Override
+            public Value<R> _parse(String input, int index) {
+                final DoubleValue v = self._parseDouble(input, index);
+                if (v.status) {
+                    return Value.success(v.index, transform.apply(v.value));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // primitive fold, the counterparts of many / sepBy without the List
+    ///////////////////////////////////////////////////////////////////////////
+
+    default DoubleParsec foldMany(double identity, DoubleBinaryOperator op) {
+        final DoubleParsec self = this;
+        return new Grammar.DoubleRule(Grammar.repeat("foldMany", self, 0, Integer.MAX_VALUE, true)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                double acc = identity;
+                int increasing_index = index;
+                while (true) {
+                    ParseContext.step(increasing_index);
+                    final DoubleValue v = self._parseDouble(input, increasing_index);
+                    if (!v.status) {
+                        break;
+                    }
+
+                    acc = op.applyAsDouble(acc, v.value);
+                    if (v.index == increasing_index) {
+                        break;
+                    }
+                    increasing_index = v.index;
+                }
+
+                return DoubleValue.success(increasing_index, acc);
+            }
+        };
+    }
+
+    default DoubleParsec foldSepBy(Parsec<?> seq, double identity, DoubleBinaryOperator op) {
+        final DoubleParsec self = this;
+        return new Grammar.DoubleRule(Grammar.separated("foldSepBy", self, seq, 0, Integer.MAX_VALUE)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                DoubleValue v = self._parseDouble(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                double acc = op.applyAsDouble(identity, v.value);
+                while (true) {
+                    ParseContext.step(v.index);
+                    final Value<?> sep = seq._parse(input, v.index);
+                    if (!sep.status) {
+                        break;
+                    }
+
+                    v = self._parseDouble(input, sep.index);
+                    if (!v.status) {
+                        return v;
+                    }
+
+                    acc = op.applyAsDouble(acc, v.value);
+                }
+
+                return DoubleValue.success(v.index, acc);
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    @SuppressWarnings("WeakerAccess")
+    final class DoubleValue {
+
+        public final boolean status;
+        public final int index;
+        public final double value;
+        public final Object expected;
+
+        private DoubleValue(boolean status, int index, double value, Object expected) {
+            this.status = status;
+            this.index = index;
+            this.value = value;
+            this.expected = expected;
+        }
+
+        public static DoubleValue success(int index, double value) {
+            return new DoubleValue(true, index, value, null);
+        }
+
+        public static DoubleValue failure(int index, Object expected) {
+            return new DoubleValue(false, index, 0, expected);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DoubleValue value1 = (DoubleValue) o;
+            return status == value1.status &&
+                    index == value1.index &&
+                    Double.compare(value, value1.value) == 0 &&
+                    Objects.equals(expected, value1.expected);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(status, index, value, expected);
+        }
+
+        @Override
+        public String toString() {
+            return "DoubleValue{" +
+                    "status=" + status +
+                    ", index=" + index +
+                    ", value=" + value +
+                    ", expected=" + expected +
+                    '}';
+        }
+    }
+}
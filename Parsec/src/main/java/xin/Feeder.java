@@ -0,0 +1,202 @@
+package xin;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * push mode parsing of one stream, created by {@link Parsec#feeder(Parsec)}.
+ * <p>
+ * chunks are appended to a buffer holding only the input not yet consumed by a result, and the parser is run
+ * again from the start of that buffer after every chunk. the primitives (char_, string, regex, literals, the
+ * numbers, skippers...) tell the parse when they read at or past the end of the buffered input, i.e. when one
+ * more char could have changed what they did. a parse during which any of them did asks for more input,
+ * whether it succeeded or failed, and wherever it reports its failure: regex("\\d+;") on "12" fails at 0,
+ * yet waits for more. otherwise its result or error is final. hand written parsers don't report it, so
+ * their outcome is taken as final.
+ * <p>
+ * once a result is returned its input is dropped, the rest is kept for the next one, so one feeder
+ * handles any number of messages on the same stream.
+ * <p>
+ * an error leaves its input buffered, so every later feed fails the same way until the bad input is dropped
+ * with {@link #discard(int)}, e.g. up to just past {@code error.index}, or everything with {@link #reset()}.
+ * <p>
+ * the parser is not suspended between chunks: a message of n chars arriving in k chunks is parsed up to k
+ * times, O(k * n), and is buffered whole until its result. feed chunks as large as the stream gives them,
+ * not char by char, and keep messages bounded.
+ * <p>
+ * not thread safe, but cheap: one feeder per stream, driven by whichever thread owns the stream
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class Feeder<T> {
+
+    public enum Status {
+        NEED_MORE_INPUT, RESULT, ERROR
+    }
+
+    public static final class Result<T> {
+
+        private static final Result<?> NEED_MORE_INPUT = new Result<>(Status.NEED_MORE_INPUT, null, null);
+
+        public final Status status;
+        public final T value;
+        public final Parsec.ParseException error;
+
+        private Result(Status status, T value, Parsec.ParseException error) {
+            this.status = status;
+            this.value = value;
+            this.error = error;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Result<T> needMoreInput() {
+            return (Result<T>) NEED_MORE_INPUT;
+        }
+
+        static <T> Result<T> result(T value) {
+            return new Result<>(Status.RESULT, value, null);
+        }
+
+        static <T> Result<T> error(Parsec.ParseException error) {
+            return new Result<>(Status.ERROR, null, error);
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "status=" + status +
+                    ", value=" + value +
+                    ", error=" + error +
+                    '}';
+        }
+    }
+
+    private final Parsec<T> parsec;
+    private final CharsetDecoder decoder;
+
+    private final StringBuilder buffer = new StringBuilder();
+    // bytes of a char split across two ByteBuffer chunks
+    private ByteBuffer undecoded = ByteBuffer.allocate(0);
+    private boolean ended;
+
+    Feeder(Parsec<T> parsec, Charset charset) {
+        this.parsec = parsec;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * appends chunk (a String, or a CharBuffer read from a channel) and tries to parse.
+     * an empty chunk just tries again on what is buffered, which is how the input left over after a result
+     * gets parsed
+     */
+    public Result<T> feed(CharSequence chunk) {
+        Parsec._check(!ended, "feeder already ended");
+        buffer.append(chunk);
+        return attempt();
+    }
+
+    public Result<T> feed(ByteBuffer chunk) {
+        Parsec._check(!ended, "feeder already ended");
+
+        final ByteBuffer bytes;
+        if (undecoded.hasRemaining()) {
+            bytes = ByteBuffer.allocate(undecoded.remaining() + chunk.remaining());
+            bytes.put(undecoded).put(chunk).flip();
+        } else {
+            bytes = chunk;
+        }
+
+        try {
+            decode(bytes, false);
+        } catch (CharacterCodingException e) {
+            return Result.error(new Parsec.ParseException("malformed input: " + e));
+        }
+
+        undecoded = ByteBuffer.allocate(bytes.remaining());
+        undecoded.put(bytes).flip();
+        return attempt();
+    }
+
+    /**
+     * no more input will come, what is buffered is parsed as the rest of the stream
+     */
+    public Result<T> end() {
+        if (!ended) {
+            ended = true;
+            try {
+                decode(undecoded, true);
+            } catch (CharacterCodingException e) {
+                return Result.error(new Parsec.ParseException("malformed input: " + e));
+            }
+        }
+        return attempt();
+    }
+
+    /**
+     * drops the first count buffered chars, to resync after an ERROR. feed an empty chunk to parse what is left
+     */
+    public void discard(int count) {
+        Parsec._check(count >= 0 && count <= buffer.length(), "can not discard " + count + " of " + buffer.length() + " chars");
+        buffer.delete(0, count);
+    }
+
+    /**
+     * drops everything buffered, including the bytes of a partly received char, and takes input again after
+     * {@link #end()}, as a new feeder would
+     */
+    public void reset() {
+        buffer.setLength(0);
+        undecoded = ByteBuffer.allocate(0);
+        decoder.reset();
+        ended = false;
+    }
+
+    /**
+     * chars buffered, that is received but not consumed by a result yet
+     */
+    public int buffered() {
+        return buffer.length();
+    }
+
+    private void decode(ByteBuffer bytes, boolean endOfInput) throws CharacterCodingException {
+        final CharBuffer chars = CharBuffer.allocate((int) (bytes.remaining() * decoder.maxCharsPerByte()) + 2);
+        CoderResult res = decoder.decode(bytes, chars, endOfInput);
+        if (res.isError()) {
+            res.throwException();
+        }
+
+        if (endOfInput) {
+            res = decoder.flush(chars);
+            if (res.isError()) {
+                res.throwException();
+            }
+            decoder.reset();
+        }
+
+        chars.flip();
+        buffer.append(chars);
+    }
+
+    private Result<T> attempt() {
+        final String input = buffer.toString();
+        final ParseContext.Attempt<T> attempt = ParseContext.attempt(parsec, input);
+        final Parsec.Value<T> res = attempt.value;
+
+        // something looked at the end, more input could change the outcome either way
+        if (!ended && attempt.hitEnd) {
+            return Result.needMoreInput();
+        }
+
+        if (res.status) {
+            buffer.delete(0, res.index);
+            return Result.result(res.value);
+        }
+        return Result.error(Parsec._failed(input, res.index, res.expected));
+    }
+}
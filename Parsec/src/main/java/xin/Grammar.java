@@ -0,0 +1,243 @@
+package xin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * the shape of the combinator graph, for {@link Parsec#lint(Parsec)}.
+ * <p>
+ * the combinators build their parsers as {@link Rule}s, which carry the node they were built from in a
+ * final field. parsing never looks at it. a parser without a node (a hand written lambda) is opaque:
+ * assumed to consume input and not looked into
+ */
+final class Grammar {
+
+    enum Kind {
+        TERMINAL, SEQUENCE, CHOICE, TRY_CHOICE, OPTIONAL, REPEAT, SEPARATED, WRAP, RECOVER, REF
+    }
+
+    static final class Node {
+        final Kind kind;
+        final String name;
+        final List<Parsec<?>> children;
+
+        // TERMINAL only
+        boolean nullable;
+        boolean alwaysSucceeds;
+        String literal;
+        Pattern regex;
+        // single char classes: a java.lang.Character predicate like isDigit, or chars in or not in a set
+        String charPredicate;
+        String chars;
+        boolean negated;
+        List<String> literals;
+        Skipper skipper;
+
+        // REPEAT / SEPARATED
+        int min;
+        int max;
+        // stops by itself once an iteration consumes nothing
+        boolean guarded;
+
+        private Node(Kind kind, String name, Parsec<?>... children) {
+            this.kind = kind;
+            this.name = name;
+            this.children = Collections.unmodifiableList(Arrays.asList(children));
+        }
+    }
+
+    /**
+     * a parser knowing what it was built from
+     */
+    interface Described {
+        Node node();
+    }
+
+    abstract static class Rule<T> implements Parsec<T>, Described {
+        private final Node node;
+
+        Rule(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public final Node node() {
+            return node;
+        }
+    }
+
+    abstract static class IntRule implements IntParsec, Described {
+        private final Node node;
+
+        IntRule(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public final Node node() {
+            return node;
+        }
+    }
+
+    abstract static class LongRule implements LongParsec, Described {
+        private final Node node;
+
+        LongRule(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public final Node node() {
+            return node;
+        }
+    }
+
+    abstract static class DoubleRule implements DoubleParsec, Described {
+        private final Node node;
+
+        DoubleRule(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public final Node node() {
+            return node;
+        }
+    }
+
+    private Grammar() {
+    }
+
+    /**
+     * the node of parsec, null when opaque or a ref not set yet.
+     * a ref is looked through each time rather than described once, since it is used before it is set
+     */
+    static Node node(Parsec<?> parsec) {
+        if (parsec instanceof Ref) {
+            final Ref<?> ref = (Ref<?>) parsec;
+            final Parsec<?> target = ref.resolved();
+            return target == null ? null : new Node(Kind.REF, ref.isLazy() ? "lazy" : "ref", target);
+        }
+        return parsec instanceof Described ? ((Described) parsec).node() : null;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * consumes at least one char on success
+     */
+    static Node terminal(String name) {
+        return new Node(Kind.TERMINAL, name);
+    }
+
+    /**
+     * may succeed without consuming, and with alwaysSucceeds never fails
+     */
+    static Node nullable(String name, boolean alwaysSucceeds) {
+        final Node node = new Node(Kind.TERMINAL, name);
+        node.nullable = true;
+        node.alwaysSucceeds = alwaysSucceeds;
+        return node;
+    }
+
+    static Node literal(String literal) {
+        return literal("string(\"" + literal + "\")", literal);
+    }
+
+    static Node literal(String name, String literal) {
+        final Node node = new Node(Kind.TERMINAL, name);
+        node.literal = literal;
+        node.nullable = literal.isEmpty();
+        return node;
+    }
+
+    static Node regex(Pattern pattern) {
+        final Node node = new Node(Kind.TERMINAL, "regex(" + pattern.pattern() + ")");
+        node.regex = pattern;
+        node.nullable = pattern.matcher("").lookingAt();
+        return node;
+    }
+
+    /**
+     * one char for which the java.lang.Character predicate of that name, e.g. isDigit, is true
+     */
+    static Node charClass(String name, String characterPredicate) {
+        final Node node = new Node(Kind.TERMINAL, name);
+        node.charPredicate = characterPredicate;
+        return node;
+    }
+
+    /**
+     * one char in chars, or not in chars when negated
+     */
+    static Node charSet(String name, String chars, boolean negated) {
+        final Node node = new Node(Kind.TERMINAL, name);
+        node.chars = chars;
+        node.negated = negated;
+        return node;
+    }
+
+    static Node literals(Collection<String> literals) {
+        final Node node = new Node(Kind.TERMINAL, "literals" + literals);
+        node.literals = new ArrayList<>(literals);
+        node.nullable = literals.contains("");
+        return node;
+    }
+
+    static Node skipper(Skipper skipper) {
+        final Node node = nullable("skipper", true);
+        node.skipper = skipper;
+        return node;
+    }
+
+    static Node sequence(String name, Parsec<?>... children) {
+        return new Node(Kind.SEQUENCE, name, children);
+    }
+
+    static Node choice(Parsec<?>... children) {
+        return new Node(Kind.CHOICE, "choice", children);
+    }
+
+    static Node tryChoice(Parsec<?>... children) {
+        return new Node(Kind.TRY_CHOICE, "tryChoice", children);
+    }
+
+    static Node optional(Parsec<?> child) {
+        return new Node(Kind.OPTIONAL, "optional", child);
+    }
+
+    static Node repeat(String name, Parsec<?> child, int min, int max, boolean guarded) {
+        final Node node = new Node(Kind.REPEAT, name, child);
+        node.min = min;
+        node.max = max;
+        node.guarded = guarded;
+        return node;
+    }
+
+    static Node separated(String name, Parsec<?> p, Parsec<?> sep, int min, int max) {
+        final Node node = new Node(Kind.SEPARATED, name, p, sep);
+        node.min = min;
+        node.max = max;
+        return node;
+    }
+
+    /**
+     * same success and consumption as child, only the result differs
+     */
+    static Node wrap(String name, Parsec<?> child) {
+        return new Node(Kind.WRAP, name, child);
+    }
+
+    /**
+     * like child, but after a failure it can also succeed having consumed nothing, up to where sync matches
+     */
+    static Node recover(Parsec<?> child, Parsec<?> sync) {
+        return new Node(Kind.RECOVER, "recover", child, sync);
+    }
+}
@@ -0,0 +1,489 @@
+package xin;
+
+import xin.Grammar.Kind;
+import xin.Grammar.Node;
+import xin.LintReport.Cost;
+import xin.LintReport.Finding;
+import xin.LintReport.Hazard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * static analysis of the combinator graph recorded in {@link Grammar}, behind {@link Parsec#lint(Parsec)}
+ */
+final class GrammarLinter {
+
+    // a quantified group which itself contains a quantifier, e.g. (a+)+ or (\w*x)*
+    private static final Pattern NESTED_QUANTIFIER =
+            Pattern.compile("\\((?:[^()\\\\]|\\\\.)*[+*](?:[^()\\\\]|\\\\.)*\\)[+*{]");
+
+    // reachable described parsers in breadth first order, with the path they were first reached by
+    private final Map<Parsec<?>, Node> nodes = new IdentityHashMap<>();
+    private final Map<Parsec<?>, String> paths = new IdentityHashMap<>();
+    private final List<Parsec<?>> order = new ArrayList<>();
+
+    private final Set<Parsec<?>> nullable = Collections.newSetFromMap(new IdentityHashMap<>());
+    // nullable also counting a recover which succeeds empty where its sync matches, in parseCollectingErrors
+    private final Set<Parsec<?>> recoverNullable = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Parsec<?>> alwaysSucceeds = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Parsec<?>> repeated = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Parsec<?>> recursive = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final List<Finding> findings = new ArrayList<>();
+
+    private GrammarLinter() {
+    }
+
+    static LintReport lint(Parsec<?> root) {
+        final GrammarLinter linter = new GrammarLinter();
+        linter.collect(root);
+        linter.computeNullable();
+        linter.computeRepeated();
+        linter.computeRecursive();
+
+        for (Parsec<?> parsec : linter.order) {
+            linter.check(parsec);
+        }
+        linter.checkLeftRecursion();
+
+        linter.findings.sort(Comparator.comparing(f -> f.cost));
+        return new LintReport(linter.findings);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // graph
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static String name(Parsec<?> parsec) {
+        final Node node = Grammar.node(parsec);
+        return node == null ? "<opaque>" : node.name;
+    }
+
+    private void collect(Parsec<?> root) {
+        final Deque<Parsec<?>> queue = new ArrayDeque<>();
+        if (Grammar.node(root) != null) {
+            nodes.put(root, Grammar.node(root));
+            paths.put(root, name(root));
+            order.add(root);
+            queue.add(root);
+        }
+
+        while (!queue.isEmpty()) {
+            final Parsec<?> parsec = queue.poll();
+            final Node node = nodes.get(parsec);
+            for (int i = 0; i < node.children.size(); i++) {
+                final Parsec<?> child = node.children.get(i);
+                final Node childNode = Grammar.node(child);
+                if (childNode == null || nodes.containsKey(child)) {
+                    continue;
+                }
+
+                final boolean alternative = node.kind == Kind.CHOICE || node.kind == Kind.TRY_CHOICE;
+                nodes.put(child, childNode);
+                paths.put(child, paths.get(parsec) + " > " + (alternative ? "#" + (i + 1) + " " : "") + childNode.name);
+                order.add(child);
+                queue.add(child);
+            }
+        }
+    }
+
+    private List<Parsec<?>> children(Parsec<?> parsec) {
+        final Node node = nodes.get(parsec);
+        return node == null ? Collections.emptyList() : node.children;
+    }
+
+    private void computeNullable() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Parsec<?> parsec : order) {
+                final Node node = nodes.get(parsec);
+                if (!nullable.contains(parsec) && isNullable(node, nullable, false)) {
+                    nullable.add(parsec);
+                    changed = true;
+                }
+                if (!recoverNullable.contains(parsec) && isNullable(node, recoverNullable, true)) {
+                    recoverNullable.add(parsec);
+                    changed = true;
+                }
+                if (!alwaysSucceeds.contains(parsec) && isAlwaysSucceeding(node)) {
+                    alwaysSucceeds.add(parsec);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private static boolean isNullable(Node node, Set<Parsec<?>> nullable, boolean recovering) {
+        switch (node.kind) {
+            case TERMINAL:
+                return node.nullable;
+            case SEQUENCE:
+                return node.children.stream().allMatch(nullable::contains);
+            case CHOICE:
+            case TRY_CHOICE:
+                return node.children.stream().anyMatch(nullable::contains);
+            case OPTIONAL:
+                return true;
+            case REPEAT:
+                return node.min == 0 || nullable.contains(node.children.get(0));
+            case SEPARATED:
+                return nullable.contains(node.children.get(0))
+                        && (node.min == 0 || nullable.contains(node.children.get(1)));
+            case RECOVER:
+                return recovering || nullable.contains(node.children.get(0));
+            default:
+                return nullable.contains(node.children.get(0));
+        }
+    }
+
+    private boolean isAlwaysSucceeding(Node node) {
+        switch (node.kind) {
+            case TERMINAL:
+                return node.alwaysSucceeds;
+            case SEQUENCE:
+                return node.children.stream().allMatch(alwaysSucceeds::contains);
+            case CHOICE:
+            case TRY_CHOICE:
+                return node.children.stream().anyMatch(alwaysSucceeds::contains);
+            case OPTIONAL:
+                return true;
+            case REPEAT:
+                return node.min == 0 || alwaysSucceeds.contains(node.children.get(0));
+            case SEPARATED:
+                return false;
+            default:
+                return alwaysSucceeds.contains(node.children.get(0));
+        }
+    }
+
+    private void computeRepeated() {
+        final Deque<Parsec<?>> stack = new ArrayDeque<>();
+        for (Parsec<?> parsec : order) {
+            final Kind kind = nodes.get(parsec).kind;
+            if (kind == Kind.REPEAT || kind == Kind.SEPARATED) {
+                stack.addAll(children(parsec));
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            final Parsec<?> parsec = stack.pop();
+            if (nodes.containsKey(parsec) && repeated.add(parsec)) {
+                stack.addAll(children(parsec));
+            }
+        }
+    }
+
+    private void computeRecursive() {
+        for (Parsec<?> parsec : order) {
+            final Set<Parsec<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            final Deque<Parsec<?>> stack = new ArrayDeque<>(children(parsec));
+            while (!stack.isEmpty()) {
+                final Parsec<?> next = stack.pop();
+                if (next == parsec) {
+                    recursive.add(parsec);
+                    break;
+                }
+                if (nodes.containsKey(next) && seen.add(next)) {
+                    stack.addAll(children(next));
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // checks
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void report(Hazard hazard, Cost cost, Parsec<?> at, String message) {
+        findings.add(new Finding(hazard, cost, paths.get(at), message));
+    }
+
+    private void check(Parsec<?> parsec) {
+        final Node node = nodes.get(parsec);
+        switch (node.kind) {
+            case TERMINAL:
+                if (node.regex != null) {
+                    checkRegex(parsec, node.regex);
+                }
+                break;
+            case REPEAT:
+                if (!node.guarded && node.max == Integer.MAX_VALUE && nullable.contains(node.children.get(0))) {
+                    final Parsec<?> child = node.children.get(0);
+                    report(Hazard.NON_CONSUMING_REPETITION, Cost.NON_TERMINATING, parsec,
+                            name(child) + (alwaysSucceeds.contains(child) ? " always succeeds" : " can succeed")
+                                    + " without consuming input, so " + node.name + " repeats it forever");
+                } else if (!node.guarded && recoverNullable.contains(node.children.get(0))) {
+                    report(Hazard.NON_CONSUMING_REPETITION, Cost.LINEAR, parsec,
+                            name(node.children.get(0)) + " can recover without consuming input where its sync matches, so "
+                                    + node.name + " runs it again at the same index, adding a second fallback");
+                }
+                break;
+            case SEPARATED:
+                if (node.max == Integer.MAX_VALUE
+                        && nullable.contains(node.children.get(0)) && nullable.contains(node.children.get(1))) {
+                    report(Hazard.NON_CONSUMING_REPETITION, Cost.NON_TERMINATING, parsec,
+                            "both " + name(node.children.get(0)) + " and separator " + name(node.children.get(1))
+                                    + " can succeed without consuming input, so " + node.name + " repeats forever");
+                } else if (recoverNullable.contains(node.children.get(0)) && recoverNullable.contains(node.children.get(1))) {
+                    report(Hazard.NON_CONSUMING_REPETITION, Cost.LINEAR, parsec,
+                            "both " + name(node.children.get(0)) + " and separator " + name(node.children.get(1))
+                                    + " can recover without consuming input, so " + node.name
+                                    + " runs them again at the same index, adding a second fallback");
+                }
+                break;
+            case CHOICE:
+            case TRY_CHOICE:
+                checkAlternatives(parsec, node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void checkRegex(Parsec<?> parsec, Pattern regex) {
+        final String pattern = regex.pattern();
+        if (!pattern.startsWith("^") && !pattern.startsWith("\\A") && !pattern.startsWith("\\G")) {
+            report(Hazard.UNANCHORED_REGEX, Cost.QUADRATIC, parsec,
+                    "pattern is not anchored with ^, each failing match scans the rest of the input");
+        }
+        if (NESTED_QUANTIFIER.matcher(pattern).find()) {
+            report(Hazard.NESTED_QUANTIFIER, Cost.EXPONENTIAL, parsec,
+                    "a quantified group contains a quantifier, failing matches backtrack exponentially");
+        }
+    }
+
+    private void checkAlternatives(Parsec<?> parsec, Node node) {
+        final List<Parsec<?>> alternatives = node.children;
+        final boolean backtracks = node.kind == Kind.TRY_CHOICE;
+
+        for (int i = 1; i < alternatives.size(); i++) {
+            final Parsec<?> alternative = alternatives.get(i);
+            final String unreachable = unreachableBecause(alternatives, i, backtracks);
+            if (unreachable != null) {
+                report(Hazard.UNREACHABLE_ALTERNATIVE, Cost.CONSTANT, parsec,
+                        "alternative #" + (i + 1) + " " + name(alternative) + " is never reached: " + unreachable);
+                continue;
+            }
+
+            if (!backtracks) {
+                continue;
+            }
+            for (int j = 0; j < i; j++) {
+                final Parsec<?> prefix = sharedPrefix(alternatives.get(j), alternative);
+                if (prefix != null) {
+                    final Cost cost = recursive.contains(parsec) ? Cost.EXPONENTIAL
+                            : repeated.contains(parsec) ? Cost.QUADRATIC : Cost.LINEAR;
+                    report(Hazard.SHARED_PREFIX, cost, parsec,
+                            "alternatives #" + (j + 1) + " and #" + (i + 1) + " both start with " + name(prefix)
+                                    + ", which is parsed again after backtracking; factor it out of the tryChoice");
+                    break;
+                }
+            }
+        }
+    }
+
+    private String unreachableBecause(List<Parsec<?>> alternatives, int i, boolean backtracks) {
+        final Parsec<?> alternative = alternatives.get(i);
+        final String literal = literal(leading(alternative));
+
+        for (int j = 0; j < i; j++) {
+            final Parsec<?> earlier = alternatives.get(j);
+            if (earlier == alternative) {
+                return "it is the same parser as alternative #" + (j + 1);
+            }
+            if (alwaysSucceeds.contains(earlier)) {
+                return "alternative #" + (j + 1) + " " + name(earlier) + " always succeeds";
+            }
+
+            final String earlierLiteral = literal(unwrap(earlier));
+            if (earlierLiteral != null && literal != null && !earlierLiteral.isEmpty()
+                    && literal.startsWith(earlierLiteral)) {
+                return "alternative #" + (j + 1) + " matches its prefix \"" + earlierLiteral + "\" first";
+            }
+
+            // without backtracking, an alternative failing after the shared prefix ends the choice
+            if (!backtracks) {
+                final Parsec<?> prefix = sharedPrefix(earlier, alternative);
+                if (prefix != null && !nullable.contains(prefix)) {
+                    return "choice does not backtrack, once alternative #" + (j + 1) + " consumed " + name(prefix)
+                            + " this one is not tried; use tryChoice or factor the prefix out";
+                }
+
+                // a literal failing part way through fails consumed, e.g. string("abc") on "abd"
+                final String leadingLiteral = literal(leading(earlier));
+                final int common = leadingLiteral == null || literal == null ? 0 : commonPrefix(leadingLiteral, literal);
+                if (common > 0) {
+                    return "choice does not backtrack, alternative #" + (j + 1) + " fails after consuming \""
+                            + literal.substring(0, common) + "\" and this one is not tried; use tryChoice or factor the prefix out";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        final int len = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < len && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * the first parser a sequence runs, looking through result only wrappers
+     */
+    private Parsec<?> leading(Parsec<?> parsec) {
+        Parsec<?> current = parsec;
+        for (int depth = 0; depth < 64; depth++) {
+            final Node node = nodes.get(current);
+            if (node == null || (node.kind != Kind.WRAP && node.kind != Kind.REF && node.kind != Kind.SEQUENCE)) {
+                return current;
+            }
+            current = node.children.get(0);
+        }
+        return current;
+    }
+
+    private Parsec<?> unwrap(Parsec<?> parsec) {
+        Parsec<?> current = parsec;
+        for (int depth = 0; depth < 64; depth++) {
+            final Node node = nodes.get(current);
+            if (node == null || (node.kind != Kind.WRAP && node.kind != Kind.REF)) {
+                return current;
+            }
+            current = node.children.get(0);
+        }
+        return current;
+    }
+
+    private String literal(Parsec<?> parsec) {
+        final Node node = nodes.get(parsec);
+        return node == null ? null : node.literal;
+    }
+
+    private Parsec<?> sharedPrefix(Parsec<?> a, Parsec<?> b) {
+        final Parsec<?> first = leading(a);
+        final Parsec<?> second = leading(b);
+        // a prefix only when at least one of them goes on after it
+        if (first == a && second == b) {
+            return null;
+        }
+        if (first == second && nodes.containsKey(first)) {
+            return first;
+        }
+
+        final Node firstNode = nodes.get(first);
+        final Node secondNode = nodes.get(second);
+        if (firstNode == null || secondNode == null) {
+            return null;
+        }
+        if (firstNode.literal != null && !firstNode.literal.isEmpty() && firstNode.literal.equals(secondNode.literal)) {
+            return first;
+        }
+        if (firstNode.regex != null && secondNode.regex != null
+                && firstNode.regex.pattern().equals(secondNode.regex.pattern())) {
+            return first;
+        }
+        return null;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // left recursion
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * parsers run at the same index as parsec, before it consumed anything
+     */
+    private List<Parsec<?>> leftChildren(Parsec<?> parsec) {
+        final Node node = nodes.get(parsec);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+
+        switch (node.kind) {
+            case TERMINAL:
+                return Collections.emptyList();
+            case SEQUENCE: {
+                final List<Parsec<?>> left = new ArrayList<>();
+                for (Parsec<?> child : node.children) {
+                    left.add(child);
+                    if (!nullable.contains(child)) {
+                        break;
+                    }
+                }
+                return left;
+            }
+            case SEPARATED:
+                return nullable.contains(node.children.get(0)) ? node.children : node.children.subList(0, 1);
+            case CHOICE:
+            case TRY_CHOICE:
+                return node.children;
+            default:
+                return node.children.subList(0, 1);
+        }
+    }
+
+    private void checkLeftRecursion() {
+        final Set<Parsec<?>> reported = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Parsec<?> parsec : order) {
+            if (reported.contains(parsec)) {
+                continue;
+            }
+
+            final List<Parsec<?>> cycle = leftCycle(parsec);
+            if (cycle == null) {
+                continue;
+            }
+
+            reported.addAll(cycle);
+            final StringBuilder through = new StringBuilder();
+            for (Parsec<?> step : cycle) {
+                through.append(name(step)).append(" > ");
+            }
+            through.append(name(parsec));
+            report(Hazard.LEFT_RECURSION, Cost.NON_TERMINATING, parsec,
+                    "reaches itself through " + through + " without consuming input"
+                            + (nullable.contains(parsec) ? ", and can succeed empty," : "")
+                            + " so parsing it recurses until the stack overflows");
+        }
+    }
+
+    /**
+     * the left edge path from parsec back to itself, or null
+     */
+    private List<Parsec<?>> leftCycle(Parsec<?> parsec) {
+        final Set<Parsec<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Parsec<?>> path = new ArrayList<>();
+        path.add(parsec);
+        return leftCycle(parsec, parsec, path, seen) ? path : null;
+    }
+
+    private boolean leftCycle(Parsec<?> target, Parsec<?> current, List<Parsec<?>> path, Set<Parsec<?>> seen) {
+        for (Parsec<?> child : leftChildren(current)) {
+            if (child == target) {
+                return true;
+            }
+            if (!seen.add(child)) {
+                continue;
+            }
+
+            path.add(child);
+            if (leftCycle(target, child, path, seen)) {
+                return true;
+            }
+            path.remove(path.size() - 1);
+        }
+        return false;
+    }
+}
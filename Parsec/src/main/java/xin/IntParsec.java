@@ -0,0 +1,237 @@
+package xin;
+
+import java.util.Objects;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * a Parsec producing a primitive int, the boxed {@link #_parse} is only used when mixed with plain Parsecs
+ */
+@SuppressWarnings("unused")
+@FunctionalInterface
+public interface IntParsec extends Parsec<Integer> {
+
+    IntValue _parseInt(String input, int index);
+
+    @Override
+    default Value<Integer> _parse(String input, int index) {
+        final IntValue v = _parseInt(input, index);
+        if (v.status) {
+            return Value.success(v.index, v.value);
+        } else {
+            return Value.failure(v.index, v.expected);
+        }
+    }
+
+    default int parseInt(String input) {
+        final IntValue res = _parseInt(input, 0);
+        if (!res.status) {
+            throw Parsec._failed(input, res.index, res.expected);
+        }
+
+        return res.value;
+    }
+
+    @Override
+    default IntParsec skip(Parsec<?> parsec) {
+        final IntParsec self = this;
+        return new Grammar.IntRule(Grammar.sequence("skip", self, parsec)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                final IntValue res = self._parseInt(input, index);
+                if (!res.status) {
+                    return res;
+                }
+
+                final Value<?> end = parsec._parse(input, res.index);
+                if (end.status) {
+                    return IntValue.success(end.index, res.value);
+                } else {
+                    return IntValue.failure(end.index, end.expected);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // primitive map
+    ///////////////////////////////////////////////////////////////////////////
+
+    default IntParsec mapToInt(IntUnaryOperator transform) {
+        final IntParsec self = this;
+        return new Grammar.IntRule(Grammar.wrap("mapToInt", self)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                final IntValue v = self._parseInt(input, index);
+                if (v.status) {
+                    return IntValue.success(v.index, transform.applyAsInt(v.value));
+                } else {
+                    return v;
+                }
+            }
+        };
+    }
+
+    default LongParsec mapToLong(IntToLongFunction transform) {
+        final IntParsec self = this;
+        return new Grammar.LongRule(Grammar.wrap("mapToLong", self)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                final IntValue v = self._parseInt(input, index);
+                if (v.status) {
+                    return LongParsec.LongValue.success(v.index, transform.applyAsLong(v.value));
+                } else {
+                    return LongParsec.LongValue.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    default DoubleParsec mapToDouble(IntToDoubleFunction transform) {
+        final IntParsec self = this;
+        return new Grammar.DoubleRule(Grammar.wrap("mapToDouble", self)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                final IntValue v = self._parseInt(input, index);
+                if (v.status) {
+                    return DoubleParsec.DoubleValue.success(v.index, transform.applyAsDouble(v.value));
+                } else {
+                    return DoubleParsec.DoubleValue.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    default <R> Parsec<R> mapToObj(IntFunction<R> transform) {
+        final IntParsec self = this;
+        return new Grammar.Rule<R>(Grammar.wrap("mapToObj", self)) {
+            @Override
+            public Value<R> _parse(String input, int index) {
+                final IntValue v = self._parseInt(input, index);
+                if (v.status) {
+                    return Value.success(v.index, transform.apply(v.value));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // primitive fold, the counterparts of many / sepBy without the List
+    ///////////////////////////////////////////////////////////////////////////
+
+    default IntParsec foldMany(int identity, IntBinaryOperator op) {
+        final IntParsec self = this;
+        return new Grammar.IntRule(Grammar.repeat("foldMany", self, 0, Integer.MAX_VALUE, true)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                int acc = identity;
+                int increasing_index = index;
+                while (true) {
+                    ParseContext.step(increasing_index);
+                    final IntValue v = self._parseInt(input, increasing_index);
+                    if (!v.status) {
+                        break;
+                    }
+
+                    acc = op.applyAsInt(acc, v.value);
+                    if (v.index == increasing_index) {
+                        break;
+                    }
+                    increasing_index = v.index;
+                }
+
+                return IntValue.success(increasing_index, acc);
+            }
+        };
+    }
+
+    default IntParsec foldSepBy(Parsec<?> seq, int identity, IntBinaryOperator op) {
+        final IntParsec self = this;
+        return new Grammar.IntRule(Grammar.separated("foldSepBy", self, seq, 0, Integer.MAX_VALUE)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                IntValue v = self._parseInt(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                int acc = op.applyAsInt(identity, v.value);
+                while (true) {
+                    ParseContext.step(v.index);
+                    final Value<?> sep = seq._parse(input, v.index);
+                    if (!sep.status) {
+                        break;
+                    }
+
+                    v = self._parseInt(input, sep.index);
+                    if (!v.status) {
+                        return v;
+                    }
+
+                    acc = op.applyAsInt(acc, v.value);
+                }
+
+                return IntValue.success(v.index, acc);
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    @SuppressWarnings("WeakerAccess")
+    final class IntValue {
+
+        public final boolean status;
+        public final int index;
+        public final int value;
+        public final Object expected;
+
+        private IntValue(boolean status, int index, int value, Object expected) {
+            this.status = status;
+            this.index = index;
+            this.value = value;
+            this.expected = expected;
+        }
+
+        public static IntValue success(int index, int value) {
+            return new IntValue(true, index, value, null);
+        }
+
+        public static IntValue failure(int index, Object expected) {
+            return new IntValue(false, index, 0, expected);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IntValue value1 = (IntValue) o;
+            return status == value1.status &&
+                    index == value1.index &&
+                    value == value1.value &&
+                    Objects.equals(expected, value1.expected);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(status, index, value, expected);
+        }
+
+        @Override
+        public String toString() {
+            return "IntValue{" +
+                    "status=" + status +
+                    ", index=" + index +
+                    ", value=" + value +
+                    ", expected=" + expected +
+                    '}';
+        }
+    }
+}
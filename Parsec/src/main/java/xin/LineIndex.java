@@ -0,0 +1,68 @@
+package xin;
+
+import java.util.Arrays;
+
+/**
+ * offsets where lines start in an input, built on the first lookup and then binary searched.
+ * <p>
+ * the errors and positions of one parse share the index of its {@link ParseContext}, so they all share one
+ * scan of the input. \n, \r\n and a lone \r all end a line
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class LineIndex {
+
+    private final String input;
+    private volatile int[] lineStarts;
+
+    private LineIndex(String input) {
+        this.input = input;
+    }
+
+    /**
+     * a new index of input, scanned on its first lookup
+     */
+    public static LineIndex of(String input) {
+        return new LineIndex(input);
+    }
+
+    public String input() {
+        return input;
+    }
+
+    public SourcePosition position(int offset) {
+        Parsec._check(offset >= 0 && offset <= input.length(), "offset out of input bounds");
+
+        final int[] starts = lineStarts();
+        int line = Arrays.binarySearch(starts, offset);
+        if (line < 0) {
+            line = -line - 2;
+        }
+
+        return new SourcePosition(offset, line + 1, offset - starts[line] + 1);
+    }
+
+    public int lineCount() {
+        return lineStarts().length;
+    }
+
+    private int[] lineStarts() {
+        int[] starts = lineStarts;
+        if (starts == null) {
+            starts = new int[16];
+            int count = 1;
+            final int len = input.length();
+            for (int i = 0; i < len; i++) {
+                final char c = input.charAt(i);
+                if (c == '\n' || (c == '\r' && (i + 1 >= len || input.charAt(i + 1) != '\n'))) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            starts = Arrays.copyOf(starts, count);
+            lineStarts = starts;
+        }
+        return starts;
+    }
+}
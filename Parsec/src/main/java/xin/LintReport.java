@@ -0,0 +1,101 @@
+package xin;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * performance hazards found by {@link Parsec#lint(Parsec)}, ordered from the most to the least expensive
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class LintReport {
+
+    public enum Hazard {
+        /**
+         * a repetition whose parser can succeed without consuming, it never ends. one that only does so through
+         * a recover ends, but first runs the recover again at the same index
+         */
+        NON_CONSUMING_REPETITION,
+        /**
+         * left recursion, the parser calls itself again before consuming anything
+         */
+        LEFT_RECURSION,
+        /**
+         * a choice alternative that can never be reached, an earlier one always succeeds or matches first
+         */
+        UNREACHABLE_ALTERNATIVE,
+        /**
+         * tryChoice alternatives starting with the same parser, which runs again after each backtrack
+         */
+        SHARED_PREFIX,
+        /**
+         * a regex without ^ searches the whole rest of the input on each failure
+         */
+        UNANCHORED_REGEX,
+        /**
+         * a regex with a quantified group containing a quantifier, like (a+)+, backtracks exponentially
+         */
+        NESTED_QUANTIFIER
+    }
+
+    /**
+     * worst case cost class of a hazard, in the length of the input
+     */
+    public enum Cost {
+        NON_TERMINATING, EXPONENTIAL, QUADRATIC, LINEAR, CONSTANT
+    }
+
+    public static final class Finding {
+
+        public final Hazard hazard;
+        public final Cost cost;
+        /**
+         * where in the grammar, as the chain of combinators from the linted root
+         */
+        public final String path;
+        public final String message;
+
+        Finding(Hazard hazard, Cost cost, String path, String message) {
+            this.hazard = hazard;
+            this.cost = cost;
+            this.path = path;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return cost + " " + hazard + " at " + path + ": " + message;
+        }
+    }
+
+    public final List<Finding> findings;
+
+    LintReport(List<Finding> findings) {
+        this.findings = Collections.unmodifiableList(findings);
+    }
+
+    public boolean isClean() {
+        return findings.isEmpty();
+    }
+
+    /**
+     * for builds: fails with every finding in the message unless the report is clean
+     */
+    public void assertClean() {
+        if (!isClean()) {
+            throw new IllegalStateException(toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (findings.isEmpty()) {
+            return "no grammar hazards found";
+        }
+
+        final StringBuilder sb = new StringBuilder().append(findings.size()).append(" grammar hazard(s) found");
+        for (Finding finding : findings) {
+            sb.append("\n  ").append(finding);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package xin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * char indexed trie behind {@link Parsec#literals(String...)} and {@link Parsec#literalMap(Map)},
+ * finds the longest literal at an index in a single pass over the input
+ */
+final class LiteralTrie<T> extends Grammar.Rule<T> {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        // sorted, so lookups can binary search on wide nodes
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        boolean terminal;
+        Object value;
+
+        Node child(char c) {
+            final char[] keys = this.keys;
+            if (keys.length <= 8) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == c) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+
+            final int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+
+            i = -i - 1;
+            final Node node = new Node();
+            final char[] newKeys = new char[keys.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newKeys[i] = c;
+            newChildren[i] = node;
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    private final Node root = new Node();
+    private final String expected;
+
+    LiteralTrie(Map<String, T> literals) {
+        super(Grammar.literals(literals.keySet()));
+        Parsec._check(!literals.isEmpty(), "literals need at least 1 literal");
+
+        final List<String> expects = new ArrayList<>(literals.size());
+        for (Map.Entry<String, T> entry : literals.entrySet()) {
+            final String literal = entry.getKey();
+            Node node = root;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.childOrCreate(literal.charAt(i));
+            }
+            node.terminal = true;
+            node.value = entry.getValue();
+            expects.add(literal);
+        }
+        this.expected = expects.toString();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Value<T> _parse(String input, int index) {
+        Node node = root;
+        Node matched = root.terminal ? root : null;
+        int matchedEnd = index;
+
+        final int len = input.length();
+        int i = index;
+        for (; i < len; i++) {
+            node = node.child(input.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                matched = node;
+                matchedEnd = i + 1;
+            }
+            if (node.keys.length == 0) {
+                // no longer literal, the next char is never looked at
+                break;
+            }
+        }
+        if (i >= len) {
+            ParseContext.hitEnd();
+        }
+
+        if (matched == null) {
+            return Value.failure(index, expected);
+        }
+        return Value.success(matchedEnd, (T) matched.value);
+    }
+}
@@ -0,0 +1,237 @@
+package xin;
+
+import java.util.Objects;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongFunction;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * a Parsec producing a primitive long, the boxed {@link #_parse} is only used when mixed with plain Parsecs
+ */
+@SuppressWarnings("unused")
+@FunctionalInterface
+public interface LongParsec extends Parsec<Long> {
+
+    LongValue _parseLong(String input, int index);
+
+    @Override
+    default Value<Long> _parse(String input, int index) {
+        final LongValue v = _parseLong(input, index);
+        if (v.status) {
+            return Value.success(v.index, v.value);
+        } else {
+            return Value.failure(v.index, v.expected);
+        }
+    }
+
+    default long parseLong(String input) {
+        final LongValue res = _parseLong(input, 0);
+        if (!res.status) {
+            throw Parsec._failed(input, res.index, res.expected);
+        }
+
+        return res.value;
+    }
+
+    @Override
+    default LongParsec skip(Parsec<?> parsec) {
+        final LongParsec self = this;
+        return new Grammar.LongRule(Grammar.sequence("skip", self, parsec)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                final LongValue res = self._parseLong(input, index);
+                if (!res.status) {
+                    return res;
+                }
+
+                final Value<?> end = parsec._parse(input, res.index);
+                if (end.status) {
+                    return LongValue.success(end.index, res.value);
+                } else {
+                    return LongValue.failure(end.index, end.expected);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // primitive map
+    ///////////////////////////////////////////////////////////////////////////
+
+    default IntParsec mapToInt(LongToIntFunction transform) {
+        final LongParsec self = this;
+        return new Grammar.IntRule(Grammar.wrap("mapToInt", self)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                final LongValue v = self._parseLong(input, index);
+                if (v.status) {
+                    return IntParsec.IntValue.success(v.index, transform.applyAsInt(v.value));
+                } else {
+                    return IntParsec.IntValue.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    default LongParsec mapToLong(LongUnaryOperator transform) {
+        final LongParsec self = this;
+        return new Grammar.LongRule(Grammar.wrap("mapToLong", self)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                final LongValue v = self._parseLong(input, index);
+                if (v.status) {
+                    return LongValue.success(v.index, transform.applyAsLong(v.value));
+                } else {
+                    return v;
+                }
+            }
+        };
+    }
+
+    default DoubleParsec mapToDouble(LongToDoubleFunction transform) {
+        final LongParsec self = this;
+        return new Grammar.DoubleRule(Grammar.wrap("mapToDouble", self)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                final LongValue v = self._parseLong(input, index);
+                if (v.status) {
+                    return DoubleParsec.DoubleValue.success(v.index, transform.applyAsDouble(v.value));
+                } else {
+                    return DoubleParsec.DoubleValue.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    default <R> Parsec<R> mapToObj(LongFunction<R> transform) {
+        final LongParsec self = this;
+        return new Grammar.Rule<R>(Grammar.wrap("mapToObj", self)) {
+            @Override
+            public Value<R> _parse(String input, int index) {
+                final LongValue v = self._parseLong(input, index);
+                if (v.status) {
+                    return Value.success(v.index, transform.apply(v.value));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // primitive fold, the counterparts of many / sepBy without the List
+    ///////////////////////////////////////////////////////////////////////////
+
+    default LongParsec foldMany(long identity, LongBinaryOperator op) {
+        final LongParsec self = this;
+        return new Grammar.LongRule(Grammar.repeat("foldMany", self, 0, Integer.MAX_VALUE, true)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                long acc = identity;
+                int increasing_index = index;
+                while (true) {
+                    ParseContext.step(increasing_index);
+                    final LongValue v = self._parseLong(input, increasing_index);
+                    if (!v.status) {
+                        break;
+                    }
+
+                    acc = op.applyAsLong(acc, v.value);
+                    if (v.index == increasing_index) {
+                        break;
+                    }
+                    increasing_index = v.index;
+                }
+
+                return LongValue.success(increasing_index, acc);
+            }
+        };
+    }
+
+    default LongParsec foldSepBy(Parsec<?> seq, long identity, LongBinaryOperator op) {
+        final LongParsec self = this;
+        return new Grammar.LongRule(Grammar.separated("foldSepBy", self, seq, 0, Integer.MAX_VALUE)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                LongValue v = self._parseLong(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                long acc = op.applyAsLong(identity, v.value);
+                while (true) {
+                    ParseContext.step(v.index);
+                    final Value<?> sep = seq._parse(input, v.index);
+                    if (!sep.status) {
+                        break;
+                    }
+
+                    v = self._parseLong(input, sep.index);
+                    if (!v.status) {
+                        return v;
+                    }
+
+                    acc = op.applyAsLong(acc, v.value);
+                }
+
+                return LongValue.success(v.index, acc);
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    @SuppressWarnings("WeakerAccess")
+    final class LongValue {
+
+        public final boolean status;
+        public final int index;
+        public final long value;
+        public final Object expected;
+
+        private LongValue(boolean status, int index, long value, Object expected) {
+            this.status = status;
+            this.index = index;
+            this.value = value;
+            this.expected = expected;
+        }
+
+        public static LongValue success(int index, long value) {
+            return new LongValue(true, index, value, null);
+        }
+
+        public static LongValue failure(int index, Object expected) {
+            return new LongValue(false, index, 0, expected);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            LongValue value1 = (LongValue) o;
+            return status == value1.status &&
+                    index == value1.index &&
+                    value == value1.value &&
+                    Objects.equals(expected, value1.expected);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(status, index, value, expected);
+        }
+
+        @Override
+        public String toString() {
+            return "LongValue{" +
+                    "status=" + status +
+                    ", index=" + index +
+                    ", value=" + value +
+                    ", expected=" + expected +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package xin;
+
+import xin.DoubleParsec.DoubleValue;
+import xin.IntParsec.IntValue;
+import xin.LongParsec.LongValue;
+
+/**
+ * number scanning behind {@link Parsec#integer()}, {@link Parsec#long_()}, {@link Parsec#decimal()}
+ * and {@link Parsec#jsonNumber()}, digits are accumulated straight from the input
+ */
+final class Numbers {
+
+    private Numbers() {
+    }
+
+    /**
+     * exact powers of ten, any int mantissa below 2^53 times / divided by one of them is correctly rounded
+     */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    static IntValue integer(String input, int index) {
+        int i = index;
+        boolean negative = false;
+        if (has(input, i) && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+            negative = input.charAt(i) == '-';
+            i++;
+        }
+
+        final int start = i;
+        // accumulate negatively, so Integer.MIN_VALUE fits
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        final int multmin = limit / 10;
+        int acc = 0;
+        while (has(input, i)) {
+            final int d = input.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            if (acc < multmin || acc * 10 < limit + d) {
+                return IntValue.failure(index, "an integer in int range");
+            }
+            acc = acc * 10 - d;
+            i++;
+        }
+
+        if (i == start) {
+            return IntValue.failure(index, "an integer");
+        }
+
+        return IntValue.success(i, negative ? acc : -acc);
+    }
+
+    static LongValue long_(String input, int index) {
+        int i = index;
+        boolean negative = false;
+        if (has(input, i) && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+            negative = input.charAt(i) == '-';
+            i++;
+        }
+
+        final int start = i;
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit / 10;
+        long acc = 0;
+        while (has(input, i)) {
+            final int d = input.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            if (acc < multmin || acc * 10 < limit + d) {
+                return LongValue.failure(index, "an integer in long range");
+            }
+            acc = acc * 10 - d;
+            i++;
+        }
+
+        if (i == start) {
+            return LongValue.failure(index, "an integer");
+        }
+
+        return LongValue.success(i, negative ? acc : -acc);
+    }
+
+    static DoubleValue decimal(String input, int index) {
+        return scanDouble(input, index, false);
+    }
+
+    static DoubleValue jsonNumber(String input, int index) {
+        return scanDouble(input, index, true);
+    }
+
+    /**
+     * whether there is a char at i, telling the parse when it looked past the end of input
+     */
+    private static boolean has(String input, int i) {
+        if (i < input.length()) {
+            return true;
+        }
+        ParseContext.hitEnd();
+        return false;
+    }
+
+    private static boolean isDigit(String input, int i) {
+        if (!has(input, i)) {
+            return false;
+        }
+        final char c = input.charAt(i);
+        return c >= '0' && c <= '9';
+    }
+
+    private static DoubleValue scanDouble(String input, int index, boolean json) {
+        int i = index;
+        boolean negative = false;
+        if (has(input, i) && (input.charAt(i) == '-' || (!json && input.charAt(i) == '+'))) {
+            negative = input.charAt(i) == '-';
+            i++;
+        }
+
+        if (!isDigit(input, i)) {
+            return DoubleValue.failure(index, json ? "a json number" : "a decimal");
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exp10 = 0;
+        boolean truncated = false;
+
+        // integer part, json forbids leading zeros: "01" only matches "0"
+        if (json && input.charAt(i) == '0') {
+            i++;
+        } else {
+            while (isDigit(input, i)) {
+                final int d = input.charAt(i) - '0';
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + d;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exp10++;
+                    truncated |= d != 0;
+                }
+                i++;
+            }
+        }
+
+        // fraction, a dot not followed by a digit is not part of the number
+        if (has(input, i) && input.charAt(i) == '.' && isDigit(input, i + 1)) {
+            i++;
+            while (isDigit(input, i)) {
+                final int d = input.charAt(i) - '0';
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + d;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exp10--;
+                } else {
+                    truncated |= d != 0;
+                }
+                i++;
+            }
+        }
+
+        // exponent, only in json numbers, again dropped when not followed by a digit
+        if (json && has(input, i) && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+            int j = i + 1;
+            boolean negativeExp = false;
+            if (has(input, j) && (input.charAt(j) == '-' || input.charAt(j) == '+')) {
+                negativeExp = input.charAt(j) == '-';
+                j++;
+            }
+            if (isDigit(input, j)) {
+                int exp = 0;
+                while (isDigit(input, j)) {
+                    if (exp < 100_000) {
+                        exp = exp * 10 + input.charAt(j) - '0';
+                    }
+                    j++;
+                }
+                exp10 += negativeExp ? -exp : exp;
+                i = j;
+            }
+        }
+
+        final double value;
+        if (mantissa == 0 && !truncated) {
+            value = 0.0;
+        } else if (!truncated && digits <= MAX_FAST_DIGITS && exp10 >= -22 && exp10 <= 22) {
+            // both operands are exact, so the single rounding of * or / is the correct one
+            value = exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10];
+        } else {
+            return DoubleValue.success(i, Double.parseDouble(input.substring(index, i)));
+        }
+
+        return DoubleValue.success(i, negative ? -value : value);
+    }
+}
@@ -0,0 +1,458 @@
+package xin;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import xin.ParseLimitExceededException.Limit;
+
+/**
+ * all the mutable state of one parse: the {@link ParseOptions} budget checked by the combinators, the
+ * errors recorded by {@link Parsec#recover} in {@link Parsec#parseCollectingErrors} mode, and the regex
+ * Matchers reused by every regex of the parse.
+ * <p>
+ * parsers themselves hold no mutable state, so one parser, e.g. a static final grammar, is safe to share
+ * by any number of threads. parsers take no context argument, so the context of the running parse is
+ * published in a thread local, set at the start and removed at the end of the parse: nothing stays
+ * behind in a thread after its parse, however many virtual threads come and go. contexts are reused
+ * through a small bounded pool rather than kept per thread, and nothing here synchronizes, so a virtual
+ * thread never pins its carrier.
+ * <p>
+ * each thread starts its pool search at a slot of its own, and slots sit a cache line apart, so threads
+ * taking and returning contexts at the same time rarely touch the same line. the step checks of the
+ * combinators are a single read of {@link #limited}, which stays false until the first parse with options
+ * or error collection and is never written again after, so it is never contended. the clock and the
+ * cancellation token are only looked at every {@link #CLOCK_INTERVAL} steps
+ */
+final class ParseContext {
+
+    private static final ThreadLocal<ParseContext> CURRENT = new ThreadLocal<>();
+    private static final int CLOCK_INTERVAL = 1024;
+    // matchers kept for at most this many patterns per parse
+    private static final int MAX_MATCHERS = 32;
+
+    static final int POOL_SIZE = Math.max(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+    // 16 references apart, a 64 byte line even with uncompressed oops at 8 bytes per slot needs only 8
+    private static final int SLOT_STRIDE = 16;
+    private static final AtomicReferenceArray<ParseContext> POOL = new AtomicReferenceArray<>(POOL_SIZE * SLOT_STRIDE);
+
+    // set once by the first limited parse, never cleared
+    private static volatile boolean limited;
+
+    private String input;
+    private ParseOptions options;
+    private boolean checked;
+    private long startNanos;
+    private long steps;
+    private int maxBacktrack;
+
+    // error collection, maxErrors is 0 when not collecting
+    private final List<Parsec.ParseException> errors = new ArrayList<>();
+    private int maxErrors;
+    private boolean truncated;
+    // per Skipper, 1 + where the skip starting at each index of the input ends, 0 when not skipped yet
+    private final Map<Skipper, int[]> skips = new IdentityHashMap<>();
+
+    // the last recover which succeeded without consuming, and where
+    private Object emptyRecover;
+    private int emptyRecoverIndex;
+
+    // regex input, reused by every regex of the parse since one match ends before the next starts
+    private final Guarded guarded = new Guarded(this);
+    private final Map<Pattern, Matcher> matchers = new IdentityHashMap<>();
+    // built on the first error or position of the parse
+    private LineIndex lines;
+    // a parser read at or past the end of the input, so more input could change the result
+    private boolean hitEnd;
+
+    private ParseContext() {
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // lifecycle
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * the result of parsing input from 0 without limits
+     */
+    static <T> Parsec.Value<T> run(Parsec<T> parsec, String input) {
+        final ParseContext context = acquire(input, ParseOptions.defaults(), 0);
+        final ParseContext previous = context.enter();
+        try {
+            return parsec._parse(input, 0);
+        } finally {
+            context.exit(previous);
+            release(context);
+        }
+    }
+
+    /**
+     * parses input from 0 within options, throwing the failure
+     */
+    static <T> T parse(Parsec<T> parsec, String input, ParseOptions options) {
+        final ParseContext context = acquire(input, options, 0);
+        final ParseContext previous = context.enter();
+        try {
+            final Parsec.Value<T> res = parsec._parse(input, 0);
+            if (!res.status) {
+                throw Parsec._failed(input, res.index, res.expected);
+            }
+            return res.value;
+        } finally {
+            context.exit(previous);
+            release(context);
+        }
+    }
+
+    /**
+     * the result of parsing input from 0 for a {@link Feeder}, and whether the parse looked at the end of input
+     */
+    static <T> Attempt<T> attempt(Parsec<T> parsec, String input) {
+        final ParseContext context = acquire(input, ParseOptions.defaults(), 0);
+        final ParseContext previous = context.enter();
+        try {
+            final Parsec.Value<T> res = parsec._parse(input, 0);
+            return new Attempt<>(res, context.hitEnd);
+        } finally {
+            context.exit(previous);
+            release(context);
+        }
+    }
+
+    static final class Attempt<T> {
+        final Parsec.Value<T> value;
+        final boolean hitEnd;
+
+        Attempt(Parsec.Value<T> value, boolean hitEnd) {
+            this.value = value;
+            this.hitEnd = hitEnd;
+        }
+    }
+
+    static <T> Recovered<T> collect(Parsec<T> parsec, String input, int maxErrors) {
+        final ParseContext context = acquire(input, ParseOptions.defaults(), maxErrors);
+        final ParseContext previous = context.enter();
+        try {
+            final Parsec.Value<T> res = parsec._parse(input, 0);
+            if (!res.status && !context.truncated) {
+                context.errors.add(Parsec._failed(input, res.index, res.expected));
+            }
+            return new Recovered<>(res.status ? res.value : null, new ArrayList<>(context.errors), context.truncated);
+        } finally {
+            context.exit(previous);
+            release(context);
+        }
+    }
+
+    /**
+     * @return the context this one replaces, to be given back to {@link #exit}
+     */
+    private ParseContext enter() {
+        // a parse started from inside another one, e.g. by a hand written parser, gets its own context
+        final ParseContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    private void exit(ParseContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static int home() {
+        final long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    }
+
+    private static ParseContext acquire(String input, ParseOptions options, int maxErrors) {
+        ParseContext context = null;
+        final int start = home();
+        for (int i = 0; i < POOL_SIZE && context == null; i++) {
+            final int slot = ((start + i) & (POOL_SIZE - 1)) * SLOT_STRIDE;
+            final ParseContext pooled = POOL.get(slot);
+            if (pooled != null && POOL.compareAndSet(slot, pooled, null)) {
+                context = pooled;
+            }
+        }
+        if (context == null) {
+            context = new ParseContext();
+        }
+
+        context.input = input;
+        context.options = options;
+        context.maxErrors = maxErrors;
+        context.checked = options != ParseOptions.defaults() || maxErrors > 0;
+        if (context.checked) {
+            if (!limited) {
+                limited = true;
+            }
+            context.startNanos = System.nanoTime();
+        }
+        return context;
+    }
+
+    private static void release(ParseContext context) {
+        context.input = null;
+        context.options = null;
+        context.steps = 0;
+        context.maxBacktrack = 0;
+        context.errors.clear();
+        context.maxErrors = 0;
+        context.truncated = false;
+        context.emptyRecover = null;
+        context.skips.clear();
+        context.guarded.input = null;
+        context.guarded.reads = 0;
+        // a matcher holds on to the input it last ran on
+        context.matchers.clear();
+        context.lines = null;
+        context.hitEnd = false;
+
+        final int start = home();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            final int slot = ((start + i) & (POOL_SIZE - 1)) * SLOT_STRIDE;
+            if (POOL.get(slot) == null && POOL.compareAndSet(slot, null, context)) {
+                return;
+            }
+        }
+        // pool full, left to the gc
+    }
+
+    /**
+     * contexts waiting in the pool, at most {@link #POOL_SIZE}
+     */
+    static int pooled() {
+        int pooled = 0;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (POOL.get(i * SLOT_STRIDE) != null) {
+                pooled++;
+            }
+        }
+        return pooled;
+    }
+
+    /**
+     * the context of the running parse, null outside of {@link Parsec#parse} and the like,
+     * e.g. when a parser is called through _parse directly
+     */
+    static ParseContext current() {
+        return CURRENT.get();
+    }
+
+    private static ParseContext checked() {
+        if (!limited) {
+            return null;
+        }
+        final ParseContext context = CURRENT.get();
+        return context != null && context.checked ? context : null;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // checks, called by the combinators
+    ///////////////////////////////////////////////////////////////////////////
+
+    static void step(int index) {
+        final ParseContext context = checked();
+        if (context != null) {
+            context.tick(index);
+        }
+    }
+
+    static void backtrack(int from, int to) {
+        final ParseContext context = checked();
+        if (context != null && to - from > context.maxBacktrack) {
+            context.maxBacktrack = to - from;
+            if (context.maxBacktrack > context.options.maxBacktrack) {
+                throw context.exceeded(Limit.BACKTRACK, to);
+            }
+        }
+    }
+
+    /**
+     * a matcher of pattern over input, its region starting at index. within a parse the matcher of a
+     * pattern is reused, and reads its input through a {@link Guarded} when the parse has a deadline or a
+     * cancellation token, since a Matcher can't otherwise be stopped mid match
+     */
+    static Matcher matcher(Pattern pattern, String input, int index) {
+        final ParseContext context = CURRENT.get();
+        if (context == null) {
+            return pattern.matcher(input).region(index, input.length());
+        }
+
+        final CharSequence text;
+        if (context.checked && (context.options.timeoutNanos != Long.MAX_VALUE || context.options.cancellation != null)) {
+            context.guarded.input = input;
+            text = context.guarded;
+        } else {
+            text = input;
+        }
+
+        Matcher matcher = context.matchers.get(pattern);
+        if (matcher == null) {
+            matcher = pattern.matcher(text);
+            if (context.matchers.size() < MAX_MATCHERS) {
+                context.matchers.put(pattern, matcher);
+            }
+        } else {
+            matcher.reset(text);
+        }
+        return matcher.region(index, input.length());
+    }
+
+    /**
+     * called by the primitives when they read at or past the end of the input, i.e. when they would have
+     * looked at the next char had there been one
+     */
+    static void hitEnd() {
+        final ParseContext context = CURRENT.get();
+        if (context != null) {
+            context.hitEnd = true;
+        }
+    }
+
+    /**
+     * the line index of input, shared by the whole parse when input is the input of the running parse
+     */
+    static LineIndex lines(String input) {
+        final ParseContext context = CURRENT.get();
+        return context == null || context.input != input ? LineIndex.of(input) : context.lines();
+    }
+
+    private LineIndex lines() {
+        if (lines == null) {
+            lines = LineIndex.of(input);
+        }
+        return lines;
+    }
+
+    /**
+     * records error in error collection mode
+     *
+     * @return false when not collecting, or once the cap is reached, recovering should then stop
+     */
+    static boolean record(Parsec.ParseException error) {
+        final ParseContext context = checked();
+        if (context == null || context.maxErrors == 0) {
+            return false;
+        }
+        if (context.errors.size() >= context.maxErrors) {
+            context.truncated = true;
+            return false;
+        }
+        context.errors.add(error);
+        return true;
+    }
+
+    /**
+     * {@link Skipper#skip}, remembering where each skip of the parse ended, so the tokens parsed again by
+     * another alternative after backtracking never scan the text after them again. the memo is an int per
+     * input char, allocated on the first skip of the parse
+     */
+    static int skip(Skipper skipper, String input, int index) {
+        final ParseContext context = CURRENT.get();
+        if (context == null || context.input != input) {
+            return skipper.skip(input, index);
+        }
+
+        int[] ends = context.skips.get(skipper);
+        if (ends == null) {
+            ends = new int[input.length() + 1];
+            context.skips.put(skipper, ends);
+        } else if (ends[index] != 0) {
+            return ends[index] - 1;
+        }
+
+        final int end = skipper.skip(input, index);
+        ends[index] = end + 1;
+        return end;
+    }
+
+    /**
+     * whether recover already recovered at index without consuming anything, so doing it again would only
+     * repeat the same error, e.g. as the element of a many
+     */
+    static boolean recoveredEmpty(Object recover, int index) {
+        final ParseContext context = checked();
+        return context != null && context.emptyRecover == recover && context.emptyRecoverIndex == index;
+    }
+
+    static void recoverEmpty(Object recover, int index) {
+        final ParseContext context = checked();
+        if (context != null) {
+            context.emptyRecover = recover;
+            context.emptyRecoverIndex = index;
+        }
+    }
+
+    /**
+     * whether {@link #record} would record, so a failure is only turned into an exception when it is kept
+     */
+    static boolean collecting() {
+        final ParseContext context = checked();
+        return context != null && context.maxErrors > 0;
+    }
+
+    private void tick(int index) {
+        steps++;
+        if (steps > options.maxSteps) {
+            throw exceeded(Limit.STEPS, index);
+        }
+        if ((steps & (CLOCK_INTERVAL - 1)) == 0) {
+            checkClock(index);
+        }
+    }
+
+    private void checkClock(int index) {
+        if (options.cancellation != null && options.cancellation.isCancelled()) {
+            throw exceeded(Limit.CANCELLED, index);
+        }
+        if (options.timeoutNanos != Long.MAX_VALUE && System.nanoTime() - startNanos > options.timeoutNanos) {
+            throw exceeded(Limit.DEADLINE, index);
+        }
+    }
+
+    private ParseLimitExceededException exceeded(Limit limit, int index) {
+        return new ParseLimitExceededException(limit, lines(), index, steps, maxBacktrack, System.nanoTime() - startNanos);
+    }
+
+    private static final class Guarded implements CharSequence {
+
+        private final ParseContext context;
+        private String input;
+        private int reads;
+
+        Guarded(ParseContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public int length() {
+            return input.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & (CLOCK_INTERVAL - 1)) == 0) {
+                context.checkClock(index);
+            }
+            return input.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return input.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return input;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package xin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a parse aborted by one of its {@link ParseOptions}, with the statistics at the point it was aborted
+ */
+@SuppressWarnings("WeakerAccess")
+public class ParseLimitExceededException extends Parsec.ParseException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Limit {
+        STEPS, BACKTRACK, DEADLINE, CANCELLED
+    }
+
+    public final Limit limit;
+    public final long steps;
+    public final int maxBacktrack;
+    public final long elapsedNanos;
+
+    ParseLimitExceededException(Limit limit, LineIndex lines, int index, long steps, int maxBacktrack, long elapsedNanos) {
+        super("parse aborted by " + limit + " limit on input index: " + index
+                        + ", after " + steps + " steps, max backtrack " + maxBacktrack
+                        + ", " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms",
+                index, null, lines);
+        this.limit = limit;
+        this.steps = steps;
+        this.maxBacktrack = maxBacktrack;
+        this.elapsedNanos = elapsedNanos;
+    }
+}
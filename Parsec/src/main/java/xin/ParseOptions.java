@@ -0,0 +1,71 @@
+package xin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * limits for parsing untrusted input, see {@link Parsec#parse(String, ParseOptions)}.
+ * immutable, every with* returns a copy, so one instance can be shared by all parses of a service
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class ParseOptions {
+
+    private static final ParseOptions DEFAULTS =
+            new ParseOptions(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, null);
+
+    public final long maxSteps;
+    public final int maxBacktrack;
+    public final long timeoutNanos;
+    public final CancellationToken cancellation;
+
+    private ParseOptions(long maxSteps, int maxBacktrack, long timeoutNanos, CancellationToken cancellation) {
+        this.maxSteps = maxSteps;
+        this.maxBacktrack = maxBacktrack;
+        this.timeoutNanos = timeoutNanos;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * no limits at all
+     */
+    public static ParseOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * max combinator steps, roughly the number of times a combinator runs one of its parsers
+     */
+    public ParseOptions withMaxSteps(long maxSteps) {
+        Parsec._check(maxSteps > 0, "maxSteps must be greater than zero");
+        return new ParseOptions(maxSteps, maxBacktrack, timeoutNanos, cancellation);
+    }
+
+    /**
+     * max chars a tryChoice alternative may get through before failing and being backtracked over
+     */
+    public ParseOptions withMaxBacktrack(int maxBacktrack) {
+        Parsec._check(maxBacktrack >= 0, "maxBacktrack should be positive");
+        return new ParseOptions(maxSteps, maxBacktrack, timeoutNanos, cancellation);
+    }
+
+    /**
+     * wall clock time a single parse may take, counted from its start
+     */
+    public ParseOptions withTimeout(long timeout, TimeUnit unit) {
+        Parsec._check(timeout > 0, "timeout must be greater than zero");
+        return new ParseOptions(maxSteps, maxBacktrack, unit.toNanos(timeout), cancellation);
+    }
+
+    public ParseOptions withCancellation(CancellationToken cancellation) {
+        return new ParseOptions(maxSteps, maxBacktrack, timeoutNanos, cancellation);
+    }
+
+    @Override
+    public String toString() {
+        return "ParseOptions{" +
+                "maxSteps=" + maxSteps +
+                ", maxBacktrack=" + maxBacktrack +
+                ", timeoutNanos=" + timeoutNanos +
+                ", cancellation=" + cancellation +
+                '}';
+    }
+}
@@ -1,51 +1,116 @@
 package xin;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static java.lang.Character.isWhitespace;
 import static java.lang.Math.min;
 
+/**
+ * a parser, immutable once built: one instance, e.g. a static final grammar, can be shared by any number
+ * of threads, platform or virtual. what a parse with options or error collection changes lives in a
+ * context of its own for the time of the parse
+ */
 @SuppressWarnings("unused")
 public interface Parsec<T> {
 
     class ParseException extends RuntimeException {
+
+        public final int index;
+        public final Object expected;
+        private final LineIndex lines;
+
         ParseException(String message) {
+            this(message, -1, null, null);
+        }
+
+        ParseException(String message, int index, Object expected, LineIndex lines) {
             super(message);
+            this.index = index;
+            this.expected = expected;
+            this.lines = lines;
         }
-    }
 
-    default T parse(String input) {
-        final Value<T> res = _parse(input, 0);
-        if (!res.status) {
-            throw new ParseException(
-                    "expect: " + res.expected + " on input index: " + res.index
-                            + ", but got: " + input.substring(res.index, min(input.length(), res.index + 5))
-            );
+        /**
+         * line and column of {@link #index}, null when the failure is not tied to an input index
+         */
+        public SourcePosition position() {
+            return lines == null ? null : lines.position(index);
         }
+    }
 
-        return res.value;
+    default T parse(String input) {
+        return ParseContext.parse(this, input, ParseOptions.defaults());
     }
 
     default T parseStrict(String input) {
         return this.skip(eof()).parse(input);
     }
 
+    /**
+     * parse within the limits of options, throws {@link ParseLimitExceededException} once one is exceeded
+     */
+    default T parse(String input, ParseOptions options) {
+        _check(options != null, "options must not be null");
+        return ParseContext.parse(this, input, options);
+    }
+
+    /**
+     * parse in error recovery mode: each failure inside a {@link #recover} is recorded and skipped over,
+     * so one pass reports the errors of the whole input. stops at the 100th error
+     */
+    default Recovered<T> parseCollectingErrors(String input) {
+        return parseCollectingErrors(input, 100);
+    }
+
+    default Recovered<T> parseCollectingErrors(String input, int maxErrors) {
+        _check(maxErrors > 0, "maxErrors must be greater than zero");
+        return ParseContext.collect(this, input, maxErrors);
+    }
+
     Value<T> _parse(String input, int index);
 
+    /**
+     * parsec with its results cached for up to maxEntries inputs of at most 4096 chars, failures are not
+     * cached. see {@link CachingParser}
+     */
+    static <T> CachingParser<T> cached(Parsec<T> parsec, int maxEntries) {
+        return new CachingParser<>(parsec, maxEntries, 4096, false);
+    }
+
+    /**
+     * push mode parsing of a stream arriving in chunks, see {@link Feeder}
+     */
+    static <T> Feeder<T> feeder(Parsec<T> parsec) {
+        return feeder(parsec, StandardCharsets.UTF_8);
+    }
+
+    static <T> Feeder<T> feeder(Parsec<T> parsec, Charset charset) {
+        return new Feeder<>(parsec, charset);
+    }
+
     default <R> Parsec<R> map(Function<T, R> transform) {
         final Parsec<T> self = this;
-        return (input, index) -> {
-            final Value<T> v = self._parse(input, index);
-            if (v.status) {
-                return Value.success(v.index, transform.apply((v.value)));
-            } else {
-                return Value.failure(v.index, v.expected);
+        return new Grammar.Rule<R>(Grammar.wrap("map", self)) {
+            @Override
+            public Value<R> _parse(String input, int index) {
+                ParseContext.step(index);
+                final Value<T> v = self._parse(input, index);
+                if (v.status) {
+                    return Value.success(v.index, transform.apply((v.value)));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
             }
         };
     }
@@ -54,19 +119,23 @@ public interface Parsec<T> {
         return map(t -> result);
     }
 
-    default Parsec<T> skip(Parsec parsec) {
+    default Parsec<T> skip(Parsec<?> parsec) {
         final Parsec<T> self = this;
-        return (input, index) -> {
-            final Value<T> res = self._parse(input, index);
-            if (!res.status) {
-                return res;
-            }
+        return new Grammar.Rule<T>(Grammar.sequence("skip", self, parsec)) {
+            @Override
+            public Value<T> _parse(String input, int index) {
+                ParseContext.step(index);
+                final Value<T> res = self._parse(input, index);
+                if (!res.status) {
+                    return res;
+                }
 
-            final Value end = parsec._parse(input, res.index);
-            if (end.status) {
-                return Value.success(end.index, res.value);
-            } else {
-                return Value.failure(end.index, end.expected);
+                final Value<?> end = parsec._parse(input, res.index);
+                if (end.status) {
+                    return Value.success(end.index, res.value);
+                } else {
+                    return Value.failure(end.index, end.expected);
+                }
             }
         };
     }
@@ -131,78 +200,99 @@ public interface Parsec<T> {
     ///////////////////////////////////////////////////////////////////////////
 
     static Parsec<Character> charMatcher(Predicate<Character> predicate, String expect) {
-        return (input, index) -> {
-            if (!input.isEmpty() && predicate.test(input.charAt(index))) {
-                return Value.success(index + 1, input.charAt(index));
-            } else {
-                return Value.failure(index, expect);
-            }
-        };
+        return new CharMatcher(Grammar.terminal(expect), predicate, expect);
     }
 
     static Parsec<Character> char_(char c) {
-        return (input, index) -> {
-            if (index < input.length() && input.charAt(index) == c) {
-                return Value.success(index + 1, c);
-            } else {
-                return Value.failure(index, c);
+        return new Grammar.Rule<Character>(Grammar.literal("char_('" + c + "')", String.valueOf(c))) {
+            @Override
+            public Value<Character> _parse(String input, int index) {
+                if (index < input.length() && input.charAt(index) == c) {
+                    return Value.success(index + 1, c);
+                } else {
+                    if (index >= input.length()) {
+                        ParseContext.hitEnd();
+                    }
+                    return Value.failure(index, c);
+                }
             }
         };
     }
 
     static Parsec<String> string(String str) {
-        return (input, index) -> {
-            final int len = str.length();
-            if (index + len <= input.length() && str.equals(input.substring(index, index + len))) {
-                return Value.success(index + len, str);
-            } else {
-                int matched = 0;
-                while (index + matched < input.length() && input.charAt(index + matched) == str.charAt(matched)) {
-                    matched += 1;
-                }
-                return Value.failure(index + matched, str);
+        return new Grammar.Rule<String>(Grammar.literal(str)) {
+            @Override
+            public Value<String> _parse(String input, int index) {
+                final int len = str.length();
+                if (input.startsWith(str, index)) {
+                    return Value.success(index + len, str);
+                } else {
+                    int matched = 0;
+                    while (index + matched < input.length() && input.charAt(index + matched) == str.charAt(matched)) {
+                        matched += 1;
+                    }
+                    if (index + matched >= input.length()) {
+                        ParseContext.hitEnd();
+                    }
+                    return Value.failure(index + matched, str);
+                }
             }
         };
     }
 
     static Parsec<Character> digit() {
-        return charMatcher(Character::isDigit, "a digit");
+        return new CharMatcher(Grammar.charClass("a digit", "isDigit"),
+                Character::isDigit, "a digit");
     }
 
     static Parsec<Character> space() {
-        return charMatcher(Character::isWhitespace, "a space");
+        return new CharMatcher(Grammar.charClass("a space", "isWhitespace"),
+                Character::isWhitespace, "a space");
     }
 
     static Parsec<Character> letter() {
-        return charMatcher(Character::isLetter, "a letter");
+        return new CharMatcher(Grammar.charClass("a letter", "isLetter"),
+                Character::isLetter, "a letter");
     }
 
     static Parsec<String> spaces() {
-        return (input, index) -> {
-            int step = 0;
-            while (index + step < input.length() && isWhitespace(input.charAt(index + step))) {
-                step++;
-            }
+        return new Grammar.Rule<String>(Grammar.nullable("spaces", true)) {
+            @Override
+            public Value<String> _parse(String input, int index) {
+                int step = 0;
+                while (index + step < input.length() && isWhitespace(input.charAt(index + step))) {
+                    step++;
+                }
+                if (index + step >= input.length()) {
+                    ParseContext.hitEnd();
+                }
 
-            final int endIndex = index + step;
-            return Value.success(endIndex, input.substring(index, endIndex));
+                final int endIndex = index + step;
+                return Value.success(endIndex, input.substring(index, endIndex));
+            }
         };
     }
 
     static Parsec<Character> oneOf(String chars) {
-        return charMatcher(character -> chars.contains(character.toString()), "one of " + chars);
+        return new CharMatcher(Grammar.charSet("one of " + chars, chars, false),
+                character -> chars.contains(character.toString()), "one of " + chars);
     }
 
     static Parsec<Character> noneOf(String chars) {
-        return charMatcher(character -> !chars.contains(character.toString()), "none of " + chars);
+        return new CharMatcher(Grammar.charSet("none of " + chars, chars, true),
+                character -> !chars.contains(character.toString()), "none of " + chars);
     }
 
     static Parsec<Character> eof() {
-        return (input, index) -> {
-            if (index >= input.length()) {
-                return Value.success(index, null);
-            } else {
-                return Value.failure(index, "EOF");
+        return new Grammar.Rule<Character>(Grammar.nullable("eof", false)) {
+            @Override
+            public Value<Character> _parse(String input, int index) {
+                if (index >= input.length()) {
+                    ParseContext.hitEnd();
+                    return Value.success(index, null);
+                } else {
+                    return Value.failure(index, "EOF");
+                }
             }
         };
     }
@@ -215,12 +305,232 @@ public interface Parsec<T> {
     }
 
     static Parsec<String> regex(Pattern pat) {
-        return (input, index) -> {
-            final Matcher matcher = pat.matcher(input.substring(index));
-            if (matcher.find(0)) {
-                return Value.success(index + matcher.end(), matcher.group(0));
-            } else {
-                return Value.failure(index, pat.pattern());
+        return new Grammar.Rule<String>(Grammar.regex(pat)) {
+            @Override
+            public Value<String> _parse(String input, int index) {
+                final Matcher matcher = ParseContext.matcher(pat, input, index);
+                final boolean found = matcher.find();
+                if (matcher.hitEnd()) {
+                    ParseContext.hitEnd();
+                }
+                if (found) {
+                    return Value.success(matcher.end(), matcher.group(0));
+                } else {
+                    return Value.failure(index, pat.pattern());
+                }
+            }
+        };
+    }
+
+    /**
+     * the longest of literals at the current index, matched through a trie instead of trying each one.
+     * on failure nothing is consumed and all literals are expected
+     */
+    static Parsec<String> literals(String... literals) {
+        final Map<String, String> map = new LinkedHashMap<>();
+        for (String literal : literals) {
+            map.put(literal, literal);
+        }
+        return literalMap(map);
+    }
+
+    /**
+     * like {@link #literals(String...)}, but results in the value the longest literal maps to
+     */
+    static <T> Parsec<T> literalMap(Map<String, T> literals) {
+        return new LiteralTrie<>(literals);
+    }
+
+    /**
+     * parsec's result with its start and end offsets, line and column are only computed when asked for
+     */
+    static <T> Parsec<Positioned<T>> withPosition(Parsec<T> parsec) {
+        return new Grammar.Rule<Positioned<T>>(Grammar.wrap("withPosition", parsec)) {
+            @Override
+            public Value<Positioned<T>> _parse(String input, int index) {
+                final Value<T> v = parsec._parse(input, index);
+                if (v.status) {
+                    return Value.success(v.index, new Positioned<>(v.value, index, v.index, ParseContext.lines(input)));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    /**
+     * skips any of spaceChars and the comments after its tokens, e.g.
+     * {@code withSkipper(" \t\r\n", lineComment("#"), blockComment("(*", "*)"))}
+     */
+    static Skipper withSkipper(String spaceChars, Skipper.Comment... comments) {
+        return new Skipper(spaceChars, comments);
+    }
+
+    /**
+     * from start up to and including the end of the line
+     */
+    static Skipper.Comment lineComment(String start) {
+        return new Skipper.Comment(start, null);
+    }
+
+    static Skipper.Comment blockComment(String start, String end) {
+        return new Skipper.Comment(start, end);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // slices, the text primitives above without the String copy
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * the input consumed by parsec, whatever parsec itself returns
+     */
+    static Parsec<Slice> slice(Parsec<?> parsec) {
+        return new Grammar.Rule<Slice>(Grammar.wrap("slice", parsec)) {
+            @Override
+            public Value<Slice> _parse(String input, int index) {
+                final Value<?> v = parsec._parse(input, index);
+                if (v.status) {
+                    return Value.success(v.index, Slice.of(input, index, v.index));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    /**
+     * the input consumed by parsec as a String shared through the {@link StringPool#shared()} pool,
+     * a repeated text is looked up in place and not copied again
+     */
+    static Parsec<String> intern(Parsec<?> parsec) {
+        return intern(parsec, StringPool.shared());
+    }
+
+    static Parsec<String> intern(Parsec<?> parsec, StringPool pool) {
+        return new Grammar.Rule<String>(Grammar.wrap("intern", parsec)) {
+            @Override
+            public Value<String> _parse(String input, int index) {
+                final Value<?> v = parsec._parse(input, index);
+                if (v.status) {
+                    return Value.success(v.index, pool.intern(input, index, v.index));
+                } else {
+                    return Value.failure(v.index, v.expected);
+                }
+            }
+        };
+    }
+
+    static Parsec<Slice> stringSlice(String str) {
+        return new Grammar.Rule<Slice>(Grammar.literal(str)) {
+            @Override
+            public Value<Slice> _parse(String input, int index) {
+                final int len = str.length();
+                if (input.startsWith(str, index)) {
+                    return Value.success(index + len, Slice.of(input, index, index + len));
+                } else {
+                    int matched = 0;
+                    while (index + matched < input.length() && input.charAt(index + matched) == str.charAt(matched)) {
+                        matched += 1;
+                    }
+                    if (index + matched >= input.length()) {
+                        ParseContext.hitEnd();
+                    }
+                    return Value.failure(index + matched, str);
+                }
+            }
+        };
+    }
+
+    static Parsec<Slice> spacesSlice() {
+        return new Grammar.Rule<Slice>(Grammar.nullable("spacesSlice", true)) {
+            @Override
+            public Value<Slice> _parse(String input, int index) {
+                int endIndex = index;
+                while (endIndex < input.length() && isWhitespace(input.charAt(endIndex))) {
+                    endIndex++;
+                }
+                if (endIndex >= input.length()) {
+                    ParseContext.hitEnd();
+                }
+
+                return Value.success(endIndex, Slice.of(input, index, endIndex));
+            }
+        };
+    }
+
+    static Parsec<Slice> regexSlice(String regex) {
+        if (!regex.startsWith("^")) {
+            regex = "^" + regex;
+        }
+        return regexSlice(Pattern.compile(regex));
+    }
+
+    static Parsec<Slice> regexSlice(Pattern pat) {
+        return new Grammar.Rule<Slice>(Grammar.regex(pat)) {
+            @Override
+            public Value<Slice> _parse(String input, int index) {
+                final Matcher matcher = ParseContext.matcher(pat, input, index);
+                final boolean found = matcher.find();
+                if (matcher.hitEnd()) {
+                    ParseContext.hitEnd();
+                }
+                if (found) {
+                    return Value.success(matcher.end(), Slice.of(input, matcher.start(), matcher.end()));
+                } else {
+                    return Value.failure(index, pat.pattern());
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // numbers, scanned straight from the input without substring / Matcher / boxing
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * {@code [+-]?\d+} as an int, fails without consuming on overflow
+     */
+    static IntParsec integer() {
+        return new Grammar.IntRule(Grammar.terminal("integer")) {
+            @Override
+            public IntParsec.IntValue _parseInt(String input, int index) {
+                return Numbers.integer(input, index);
+            }
+        };
+    }
+
+    /**
+     * {@code [+-]?\d+} as a long, fails without consuming on overflow
+     */
+    static LongParsec long_() {
+        return new Grammar.LongRule(Grammar.terminal("long_")) {
+            @Override
+            public LongParsec.LongValue _parseLong(String input, int index) {
+                return Numbers.long_(input, index);
+            }
+        };
+    }
+
+    /**
+     * {@code [+-]?\d+(\.\d+)?} as a correctly rounded double
+     */
+    static DoubleParsec decimal() {
+        return new Grammar.DoubleRule(Grammar.terminal("decimal")) {
+            @Override
+            public DoubleParsec.DoubleValue _parseDouble(String input, int index) {
+                return Numbers.decimal(input, index);
+            }
+        };
+    }
+
+    /**
+     * {@code -?(0|[1-9][0-9]*)([.][0-9]+)?([eE][+-]?[0-9]+)?} as a correctly rounded double
+     */
+    static DoubleParsec jsonNumber() {
+        return new Grammar.DoubleRule(Grammar.terminal("jsonNumber")) {
+            @Override
+            public DoubleParsec.DoubleValue _parseDouble(String input, int index) {
+                return Numbers.jsonNumber(input, index);
             }
         };
     }
@@ -229,59 +539,99 @@ public interface Parsec<T> {
     //
     ///////////////////////////////////////////////////////////////////////////
 
+    @SuppressWarnings("rawtypes")
     static Parsec choice(Parsec... parsecs) {
         _check(parsecs.length >= 2, "choice need at least 2 Parsec");
 
-        return (input, index) -> {
+        return new Grammar.Rule(Grammar.choice(parsecs)) {
+            @Override
+            public Value _parse(String input, int index) {
 
-            final List<Object> expects = new ArrayList<>();
+                final List<Object> expects = new ArrayList<>();
 
-            for (Parsec p : parsecs) {
-                final Value v = p._parse(input, index);
+                for (Parsec p : parsecs) {
+                    ParseContext.step(index);
+                    final Value v = p._parse(input, index);
 
-                if (!v.status) {
-                    expects.add(v.expected);
-                }
+                    if (!v.status) {
+                        expects.add(v.expected);
+                    }
 
-                if (v.status || v.index != index) {
-                    return v;
+                    if (v.status || v.index != index) {
+                        return v;
+                    }
                 }
-            }
 
-            return Value.failure(index, expects.toString());
+                return Value.failure(index, expects.toString());
+            }
         };
     }
 
+    @SuppressWarnings("rawtypes")
     static Parsec tryChoice(Parsec... parsecs) {
-        return (input, index) -> {
+        return new Grammar.Rule(Grammar.tryChoice(parsecs)) {
+            @Override
+            public Value _parse(String input, int index) {
 
-            final List<Object> expects = new ArrayList<>();
+                final List<Object> expects = new ArrayList<>();
 
-            for (Parsec p : parsecs) {
-                final Value v = p._parse(input, index);
-                if (v.status) {
-                    return v;
+                for (Parsec p : parsecs) {
+                    ParseContext.step(index);
+                    final Value v = p._parse(input, index);
+                    if (v.status) {
+                        return v;
+                    }
+
+                    ParseContext.backtrack(index, v.index);
+                    expects.add(v.expected);
                 }
 
-                expects.add(v.expected);
+                return Value.failure(index, expects.toString());
             }
-
-            return Value.failure(index, expects.toString());
         };
     }
 
+    ///////////////////////////////////////////////////////////////////////////
+    // recursion
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * a parser to be defined later with {@link Ref#set}, for rules used before they are built:
+     * <pre>
+     * final Ref&lt;Object&gt; value = ref();
+     * final Parsec&lt;List&gt; array = joint(char_('['), sepBy(value, char_(',')), char_(']'));
+     * value.set(choice(array, integer()));
+     * </pre>
+     */
+    static <T> Ref<T> ref() {
+        return new Ref<>(null);
+    }
+
+    /**
+     * a parser got from supplier on first use, e.g. a static field assigned further down, and from then
+     * on called directly
+     */
+    static <T> Parsec<T> lazy(Supplier<? extends Parsec<T>> supplier) {
+        _check(supplier != null, "supplier must not be null");
+        return new Ref<>(supplier);
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     //
     ///////////////////////////////////////////////////////////////////////////
 
     default <R> Parsec<R> compose(Parsec<R> parsec) {
         final Parsec<T> _this = this;
-        return (input, index) -> {
-            final Value<T> res = _this._parse(input, index);
-            if (!res.status) {
-                return Value.failure(res.index, res.expected);
-            } else {
-                return parsec._parse(input, res.index);
+        return new Grammar.Rule<R>(Grammar.sequence("compose", _this, parsec)) {
+            @Override
+            public Value<R> _parse(String input, int index) {
+                ParseContext.step(index);
+                final Value<T> res = _this._parse(input, index);
+                if (!res.status) {
+                    return Value.failure(res.index, res.expected);
+                } else {
+                    return parsec._parse(input, res.index);
+                }
             }
         };
     }
@@ -290,22 +640,27 @@ public interface Parsec<T> {
     //
     ///////////////////////////////////////////////////////////////////////////
 
+    @SuppressWarnings("rawtypes")
     static Parsec<List> joint(Parsec... parsecs) {
-        return (input, index) -> {
+        return new Grammar.Rule<List>(Grammar.sequence("joint", parsecs)) {
+            @Override
+            public Value<List> _parse(String input, int index) {
+
+                final List<Object> values = new ArrayList<>(parsecs.length);
+                int increasing_index = index;
+                for (Parsec p : parsecs) {
+                    ParseContext.step(increasing_index);
+                    final Value res = p._parse(input, increasing_index);
+                    if (!res.status) {
+                        return Value.failure(res.index, res.expected);
+                    }
 
-            final List<Object> values = new ArrayList<>(parsecs.length);
-            int increasing_index = index;
-            for (Parsec p : parsecs) {
-                final Value res = p._parse(input, increasing_index);
-                if (!res.status) {
-                    return Value.failure(res.index, res.expected);
+                    increasing_index = res.index;
+                    values.add(res.value);
                 }
 
-                increasing_index = res.index;
-                values.add(res.value);
+                return Value.success(increasing_index, values);
             }
-
-            return Value.success(increasing_index, values);
         };
     }
 
@@ -314,12 +669,72 @@ public interface Parsec<T> {
     ///////////////////////////////////////////////////////////////////////////
 
     static <T> Parsec<T> optional(Parsec<T> parsec) {
-        return (input, index) -> {
-            final Value<T> res = parsec._parse(input, index);
-            if (res.status) {
-                return res;
-            } else {
-                return Value.success(res.index, null);
+        return new Grammar.Rule<T>(Grammar.optional(parsec)) {
+            @Override
+            public Value<T> _parse(String input, int index) {
+                ParseContext.step(index);
+                final Value<T> res = parsec._parse(input, index);
+                if (res.status) {
+                    return res;
+                } else {
+                    return Value.success(res.index, null);
+                }
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * in {@link #parseCollectingErrors} mode, a failure of parsec is recorded, the input is skipped up to
+     * (not including) the next place sync matches, or the end, and fallback is the result.
+     * in plain parse mode this is just parsec.
+     * <p>
+     * an error stays recorded even when an enclosing tryChoice backtracks over it, so place recover where
+     * the grammar has committed, e.g. around the elements of a list.
+     * <p>
+     * a recovery may consume nothing, when sync matches right where parsec failed: an empty element between
+     * two separators. the same recover then failing again at the same index, as in many(recover(..)), skips the
+     * sync match (or one char when sync matches empty) without recording the error again, so the repetition
+     * moves on through the rest of the input. at the end of the input a failure consuming nothing is returned
+     * as is, so a many(recover(..)) ends there like many does
+     */
+    static <T> Parsec<T> recover(Parsec<T> parsec, Parsec<?> sync, T fallback) {
+        return new Grammar.Rule<T>(Grammar.recover(parsec, sync)) {
+            @Override
+            public Value<T> _parse(String input, int index) {
+                final Value<T> v = parsec._parse(input, index);
+                if (v.status) {
+                    return v;
+                }
+
+                // at the end with nothing consumed there is nothing to skip, the enclosing parser decides
+                if (!ParseContext.collecting() || (index >= input.length() && v.index == index)) {
+                    return v;
+                }
+                if (ParseContext.recoveredEmpty(this, index)) {
+                    final Value<?> s = sync._parse(input, index);
+                    return Value.success(s.status && s.index > index ? s.index : index + 1, fallback);
+                }
+                if (!ParseContext.record(_failed(input, v.index, v.expected))) {
+                    return v;
+                }
+
+                int syncIndex = Math.max(index, v.index);
+                while (syncIndex < input.length() && !sync._parse(input, syncIndex).status) {
+                    ParseContext.step(syncIndex);
+                    syncIndex++;
+                }
+                if (syncIndex >= input.length()) {
+                    ParseContext.hitEnd();
+                }
+                if (syncIndex == index) {
+                    ParseContext.recoverEmpty(this, index);
+                }
+
+                return Value.success(syncIndex, fallback);
             }
         };
     }
@@ -346,36 +761,40 @@ public interface Parsec<T> {
         _check(max >= 0, "max should be positive");
         _check(min >= 0, "min should be positive");
 
-        return (input, index) -> {
+        return new Grammar.Rule<List<T>>(Grammar.repeat("times", parsec, min, max, false)) {
+            @Override
+            public Value<List<T>> _parse(String input, int index) {
 
-            final List<T> values = new ArrayList<>(min);
+                final List<T> values = new ArrayList<>(min);
 
-            int increasing_index = index;
-            int count = 0;
-            while (count < max) {
+                int increasing_index = index;
+                int count = 0;
+                while (count < max) {
 
-                final Value<T> v = parsec._parse(input, increasing_index);
-                if (v.status) {
-                    values.add(v.value);
-                    increasing_index = v.index;
-                    count += 1;
-                } else {
-
-                    if (count >= min) {
-                        break;
+                    ParseContext.step(increasing_index);
+                    final Value<T> v = parsec._parse(input, increasing_index);
+                    if (v.status) {
+                        values.add(v.value);
+                        increasing_index = v.index;
+                        count += 1;
                     } else {
-                        return Value.failure(v.index,
-                                "match " + v.expected + " between [" + min + "," + max + "] times");
+
+                        if (count >= min) {
+                            break;
+                        } else {
+                            return Value.failure(v.index,
+                                    "match " + v.expected + " between [" + min + "," + max + "] times");
+                        }
                     }
-                }
 
-                if (count >= max) {
-                    break;
+                    if (count >= max) {
+                        break;
+                    }
                 }
-            }
 
-            return Value.success(increasing_index, values);
+                return Value.success(increasing_index, values);
 
+            }
         };
     }
 
@@ -383,55 +802,60 @@ public interface Parsec<T> {
     //
     ///////////////////////////////////////////////////////////////////////////
 
+    @SuppressWarnings("rawtypes")
     static Parsec<List> separated(Parsec p, Parsec seq, int min, int max) {
 
         _check(max >= min, "max < min, very wrong!!!");
         _check(max >= 0, "max must positive");
         _check(min >= 0, "min must positive");
 
-        return (input, index) -> {
+        return new Grammar.Rule<List>(Grammar.separated("separated", p, seq, min, max)) {
+            @Override
+            public Value<List> _parse(String input, int index) {
 
-            final List<Object> values = new ArrayList<>(min);
+                final List<Object> values = new ArrayList<>(min);
 
-            Value res = p._parse(input, index);
-            if (!res.status) {
-                return Value.failure(res.index, res.expected);
-            }
+                Value res = p._parse(input, index);
+                if (!res.status) {
+                    return Value.failure(res.index, res.expected);
+                }
 
-            values.add(res.value);
+                values.add(res.value);
 
-            int count = 0;
+                int count = 0;
 
-            while (true) {
+                while (true) {
 
-                res = seq._parse(input, res.index);
-                if (!res.status) {
-                    if (count >= min) {
-                        break;
+                    ParseContext.step(res.index);
+                    res = seq._parse(input, res.index);
+                    if (!res.status) {
+                        if (count >= min) {
+                            break;
+                        }
+                        return Value.failure(res.index, res.expected);
                     }
-                    return Value.failure(res.index, res.expected);
-                }
 
-                res = p._parse(input, res.index);
+                    res = p._parse(input, res.index);
 
-                if (!res.status) {
-                    return Value.failure(res.index, res.expected);
-                }
+                    if (!res.status) {
+                        return Value.failure(res.index, res.expected);
+                    }
 
-                values.add(res.value);
-                count += 1;
+                    values.add(res.value);
+                    count += 1;
 
-                if (count >= max) {
-                    break;
+                    if (count >= max) {
+                        break;
+                    }
                 }
-            }
 
 
-            if (count < min) {
-                return Value.failure(res.index, "");
-            }
+                if (count < min) {
+                    return Value.failure(res.index, "");
+                }
 
-            return Value.success(res.index, values);
+                return Value.success(res.index, values);
+            }
         };
     }
 
@@ -447,6 +871,27 @@ public interface Parsec<T> {
     //
     ///////////////////////////////////////////////////////////////////////////
 
+    /**
+     * static check of the grammar under parsec for performance hazards: repetitions that never end,
+     * left recursion, unreachable or backtracking choice alternatives and risky regexes.
+     * parsers written as plain lambdas are opaque to it
+     */
+    static LintReport lint(Parsec<?> parsec) {
+        return GrammarLinter.lint(parsec);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    //
+    ///////////////////////////////////////////////////////////////////////////
+
+    static ParseException _failed(String input, int index, Object expected) {
+        return new ParseException(
+                "expect: " + expected + " on input index: " + index
+                        + ", but got: " + input.substring(index, min(input.length(), index + 5)),
+                index, expected, ParseContext.lines(input)
+        );
+    }
+
     static void _check(boolean expression, String msg) {
         if (!expression) {
             throw new IllegalArgumentException(msg);
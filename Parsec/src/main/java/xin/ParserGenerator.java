@@ -0,0 +1,888 @@
+package xin;
+
+import xin.Grammar.Kind;
+import xin.Grammar.Node;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * ahead of time generation of a plain java recognizer from the grammar recorded in {@link Grammar}.
+ * <p>
+ * every parser in the grammar becomes one method of straight line code over the input chars, with no
+ * lambdas, no Value objects and no Lists, and with the same consumption, failure index and expected
+ * text as the combinators. results are not generated: map, mapToObj, fold ops and the like run user
+ * lambdas, which have no source, so the generated class only recognizes the input. it is meant as the
+ * fast check in front of the combinator parser, or on its own where the answer is just valid or not.
+ * <p>
+ * known limitation: recognizer only. a generated class never builds the value the combinators would,
+ * and there is no plan to, short of requiring every map to be given as source.
+ * <p>
+ * an anchored regex made of char classes, escapes like \\d and plain chars with greedy quantifiers, e.g.
+ * regex("[a-z_]\\w*") or regex("-?\\d+"), becomes loops over the chars when no quantifier could have
+ * to give chars back to what follows it. any other regex still runs on java.util.regex in the generated class.
+ * <p>
+ * parsers written as plain lambdas are opaque and rejected, as are {@link Parsec#charMatcher} predicates.
+ * in plain parse mode recover is just the parser it wraps, and so it is here.
+ * <p>
+ * from a build, run {@link #main(String[])}, e.g. through the generateParser task of the gradle build
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ParserGenerator {
+
+    // terminals generated by name
+    private static final List<String> BUILTIN_TERMINALS = Arrays.asList(
+            "spaces", "spacesSlice", "eof", "integer", "long_", "decimal", "jsonNumber");
+
+    private final Map<Parsec<?>, Integer> ids = new IdentityHashMap<>();
+    private final Map<Parsec<?>, String> paths = new IdentityHashMap<>();
+    private final List<Parsec<?>> order = new ArrayList<>();
+
+    private final StringBuilder fields = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private boolean usesIntegers;
+    private boolean usesDecimals;
+
+    private ParserGenerator() {
+    }
+
+    /**
+     * java source of a final class packageName.className recognizing what parsec parses, with
+     * <ul>
+     * <li>{@code static int match(String input, int index)}: the end index of the match at index,
+     * or -1 - the index of the failure</li>
+     * <li>{@code static boolean matches(String input)}: the match at 0 spans all of input</li>
+     * <li>{@code static int check(String input)}: the end index of the match at 0,
+     * or an IllegalArgumentException with the expected text and the failure index</li>
+     * </ul>
+     * an empty packageName generates a class in the default package
+     */
+    public static String generate(Parsec<?> parsec, String packageName, String className) {
+        Parsec._check(!className.isEmpty(), "className must not be empty");
+        final ParserGenerator generator = new ParserGenerator();
+        generator.collect(parsec);
+        for (Parsec<?> p : generator.order) {
+            generator.method(p);
+        }
+        return generator.source(parsec, packageName, className);
+    }
+
+    /**
+     * usage: {@code <grammar> <class> <output dir>}.
+     * grammar names a static Parsec field or no argument static method as owner#member, class is the fully
+     * qualified name of the generated class, its source file is written under output dir
+     */
+    public static void main(String[] args) throws ReflectiveOperationException, IOException {
+        if (args.length != 3) {
+            System.err.println("usage: ParserGenerator <owner class>#<static field or method> <generated class> <output dir>");
+            System.exit(2);
+        }
+
+        final String[] grammar = args[0].split("#", 2);
+        Parsec._check(grammar.length == 2, "grammar must be <owner class>#<static field or method>: " + args[0]);
+        final Parsec<?> parsec = resolve(Class.forName(grammar[0]), grammar[1]);
+
+        final int dot = args[1].lastIndexOf('.');
+        final String packageName = dot < 0 ? "" : args[1].substring(0, dot);
+        final String className = args[1].substring(dot + 1);
+
+        Path file = Paths.get(args[2]);
+        for (String part : packageName.isEmpty() ? new String[0] : packageName.split("\\.")) {
+            file = file.resolve(part);
+        }
+        Files.createDirectories(file);
+        file = file.resolve(className + ".java");
+        Files.write(file, generate(parsec, packageName, className).getBytes(StandardCharsets.UTF_8));
+        System.out.println("generated " + file);
+    }
+
+    private static Parsec<?> resolve(Class<?> owner, String name) throws ReflectiveOperationException {
+        Member member;
+        Object value;
+        try {
+            final Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            member = field;
+            value = Modifier.isStatic(field.getModifiers()) ? field.get(null) : null;
+        } catch (NoSuchFieldException e) {
+            final Method method = owner.getDeclaredMethod(name);
+            method.setAccessible(true);
+            member = method;
+            value = Modifier.isStatic(method.getModifiers()) ? method.invoke(null) : null;
+        }
+
+        Parsec._check(Modifier.isStatic(member.getModifiers()), name + " must be static");
+        Parsec._check(value instanceof Parsec, name + " is not a Parsec: " + value);
+        return (Parsec<?>) value;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // graph
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void collect(Parsec<?> root) {
+        final Deque<Parsec<?>> queue = new ArrayDeque<>();
+        add(root, describe(root, "").name, queue);
+
+        while (!queue.isEmpty()) {
+            final Parsec<?> parsec = queue.poll();
+            final Node node = Grammar.node(parsec);
+            // the sync of a recover only runs when collecting errors, which generated parsers do not
+            final int used = node.kind == Kind.RECOVER ? 1 : node.children.size();
+            for (int i = 0; i < used; i++) {
+                final Parsec<?> child = node.children.get(i);
+                if (!ids.containsKey(child)) {
+                    final boolean alternative = node.kind == Kind.CHOICE || node.kind == Kind.TRY_CHOICE;
+                    final String path = paths.get(parsec) + " > " + (alternative ? "#" + (i + 1) + " " : "");
+                    add(child, path + describe(child, path).name, queue);
+                }
+            }
+        }
+    }
+
+    private void add(Parsec<?> parsec, String path, Deque<Parsec<?>> queue) {
+        ids.put(parsec, order.size());
+        paths.put(parsec, path);
+        order.add(parsec);
+        queue.add(parsec);
+    }
+
+    private static Node describe(Parsec<?> parsec, String path) {
+        final Node node = Grammar.node(parsec);
+        if (node == null) {
+            throw new IllegalArgumentException("can not generate " + path + "<opaque>: a parser written as a plain lambda");
+        }
+        if (node.kind == Kind.TERMINAL && node.literal == null && node.regex == null && node.charPredicate == null
+                && node.chars == null
+                && node.literals == null && node.skipper == null && !BUILTIN_TERMINALS.contains(node.name)) {
+            throw new IllegalArgumentException("can not generate " + path + node.name + ": its predicate has no source");
+        }
+        return node;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // code
+    ///////////////////////////////////////////////////////////////////////////
+
+    private String call(Parsec<?> parsec, String index) {
+        return "p" + ids.get(parsec) + "(" + index + ")";
+    }
+
+    private void method(Parsec<?> parsec) {
+        final int id = ids.get(parsec);
+        final Node node = Grammar.node(parsec);
+        final List<Parsec<?>> children = node.children;
+
+        methods.append("\n    // ").append(paths.get(parsec).replace('\n', ' ').replace('\r', ' '))
+                .append("\n    private int p").append(id).append("(int index) {\n");
+        final Body b = new Body(methods);
+
+        switch (node.kind) {
+            case TERMINAL:
+                terminal(b, id, node);
+                break;
+            case WRAP:
+            case RECOVER:
+            case REF:
+                b.line("return " + call(children.get(0), "index") + ";");
+                break;
+            case SEQUENCE:
+                b.line("int i = index;");
+                for (Parsec<?> child : children) {
+                    b.line("i = " + call(child, "i") + ";");
+                    b.line("if (i < 0) return i;");
+                }
+                b.line("return i;");
+                break;
+            case CHOICE:
+            case TRY_CHOICE:
+                b.line("int r;");
+                final StringBuilder expects = new StringBuilder();
+                for (int i = 0; i < children.size(); i++) {
+                    b.line("r = " + call(children.get(i), "index") + ";");
+                    // a choice commits to an alternative that failed after consuming, a tryChoice backtracks
+                    b.line(node.kind == Kind.CHOICE ? "if (r >= 0 || -1 - r != index) return r;" : "if (r >= 0) return r;");
+                    b.line("final Object e" + i + " = expected;");
+                    expects.append(i == 0 ? "" : ", ").append('e').append(i);
+                }
+                b.line("return fail(index, Arrays.asList(" + expects + ").toString());");
+                break;
+            case OPTIONAL:
+                // like the combinator, a failure succeeds at the index it failed at
+                b.line("final int r = " + call(children.get(0), "index") + ";");
+                b.line("return r >= 0 ? r : -1 - r;");
+                break;
+            case REPEAT:
+                repeat(b, node);
+                break;
+            case SEPARATED:
+                separated(b, node);
+                break;
+            default:
+                throw new IllegalStateException("unknown kind " + node.kind);
+        }
+
+        methods.append("    }\n");
+    }
+
+    private void terminal(Body b, int id, Node node) {
+        if (node.charPredicate != null || node.chars != null) {
+            final String test = node.charPredicate != null ? "Character." + node.charPredicate + "(c)"
+                    : javaString(node.chars) + ".indexOf(c) " + (node.negated ? "< 0" : ">= 0");
+            b.line("if (index < len) {");
+            b.line("    final char c = input.charAt(index);");
+            b.line("    if (" + test + ") return index + 1;");
+            b.line("}");
+            b.line("return fail(index, " + javaString(node.name) + ");");
+        } else if (node.literal != null && node.literal.length() == 1) {
+            b.line("if (index < len && input.charAt(index) == " + javaChar(node.literal.charAt(0)) + ") return index + 1;");
+            // char_ expects the Character, string the String, both print the same
+            b.line("return fail(index, " + javaString(node.literal) + ");");
+        } else if (node.literal != null) {
+            final String literal = javaString(node.literal);
+            b.line("if (input.startsWith(" + literal + ", index)) return index + " + node.literal.length() + ";");
+            b.line("int matched = 0;");
+            b.line("while (index + matched < len && input.charAt(index + matched) == " + literal + ".charAt(matched)) matched++;");
+            b.line("return fail(index + matched, " + literal + ");");
+        } else if (node.regex != null && RegexLoop.lower(node.regex) != null) {
+            regexLoop(b, node.regex, RegexLoop.lower(node.regex));
+        } else if (node.regex != null) {
+            fields.append("    private static final Pattern REGEX_").append(id).append(" = Pattern.compile(")
+                    .append(javaString(node.regex.pattern())).append(", ").append(node.regex.flags()).append(");\n");
+            b.line("final Matcher m = REGEX_" + id + ".matcher(input).region(index, len);");
+            b.line("return m.find() ? m.end() : fail(index, " + javaString(node.regex.pattern()) + ");");
+        } else if (node.literals != null) {
+            // the trie as nested switches, one char read per level, remembering the longest literal so far
+            final LiteralNode root = new LiteralNode();
+            for (String literal : node.literals) {
+                LiteralNode current = root;
+                for (char c : literal.toCharArray()) {
+                    current = current.children.computeIfAbsent(c, k -> new LiteralNode());
+                }
+                current.terminal = true;
+            }
+            b.line("int end = " + (root.terminal ? "index" : "-1") + ";");
+            literalSwitch(b, root, 0, "");
+            b.line("return end >= 0 ? end : fail(index, " + javaString(node.literals.toString()) + ");");
+        } else if (node.skipper != null) {
+            skipper(b, node.skipper);
+        } else {
+            switch (node.name) {
+                case "spaces":
+                case "spacesSlice":
+                    b.line("int i = index;");
+                    b.line("while (i < len && Character.isWhitespace(input.charAt(i))) i++;");
+                    b.line("return i;");
+                    break;
+                case "eof":
+                    b.line("return index >= len ? index : fail(index, \"EOF\");");
+                    break;
+                case "integer":
+                    usesIntegers = true;
+                    b.line("return integer(index, Integer.MIN_VALUE, Integer.MAX_VALUE, \"an integer in int range\");");
+                    break;
+                case "long_":
+                    usesIntegers = true;
+                    b.line("return integer(index, Long.MIN_VALUE, Long.MAX_VALUE, \"an integer in long range\");");
+                    break;
+                case "decimal":
+                    usesDecimals = true;
+                    b.line("return decimal(index, false);");
+                    break;
+                case "jsonNumber":
+                    usesDecimals = true;
+                    b.line("return decimal(index, true);");
+                    break;
+                default:
+                    throw new IllegalStateException("unknown terminal " + node.name);
+            }
+        }
+    }
+
+    private static final class LiteralNode {
+        final Map<Character, LiteralNode> children = new TreeMap<>();
+        boolean terminal;
+    }
+
+    private void literalSwitch(Body b, LiteralNode node, int depth, String indent) {
+        final String at = depth == 0 ? "index" : "index + " + depth;
+        b.line(indent + "if (" + at + " < len) {");
+        b.line(indent + "    switch (input.charAt(" + at + ")) {");
+        for (Map.Entry<Character, LiteralNode> entry : node.children.entrySet()) {
+            final LiteralNode child = entry.getValue();
+            b.line(indent + "        case " + javaChar(entry.getKey()) + ":");
+            if (child.terminal) {
+                b.line(indent + "            end = index + " + (depth + 1) + ";");
+            }
+            if (!child.children.isEmpty()) {
+                literalSwitch(b, child, depth + 1, indent + "            ");
+            }
+            b.line(indent + "            break;");
+        }
+        b.line(indent + "    }");
+        b.line(indent + "}");
+    }
+
+    private void regexLoop(Body b, Pattern regex, List<RegexLoop> atoms) {
+        final String expected = javaString(regex.pattern());
+        b.line("int i = index;");
+        if (atoms.stream().anyMatch(RegexLoop::counted)) {
+            b.line("int n;");
+        }
+        for (RegexLoop atom : atoms) {
+            final String test = atom.test("input.charAt(i)");
+            if (atom.min == atom.max) {
+                for (int k = 0; k < atom.min; k++) {
+                    b.line("if (i >= len || !(" + test + ")) return fail(index, " + expected + ");");
+                    b.line("i++;");
+                }
+                continue;
+            }
+            if (!atom.counted()) {
+                b.line("while (i < len && " + test + ") i++;");
+                continue;
+            }
+
+            b.line("n = 0;");
+            b.line("while (" + (atom.max == Integer.MAX_VALUE ? "" : "n < " + atom.max + " && ")
+                    + "i < len && " + test + ") {");
+            b.line("    i++;");
+            b.line("    n++;");
+            b.line("}");
+            if (atom.min > 0) {
+                b.line("if (n < " + atom.min + ") return fail(index, " + expected + ");");
+            }
+        }
+        b.line("return i;");
+    }
+
+    /**
+     * one char class of an anchored regex with its quantifier, as sorted disjoint inclusive char ranges.
+     * a regex lowers to loops over such atoms when no atom could give back chars the next ones need, so the
+     * greedy loops end where the backtracking matcher would
+     */
+    private static final class RegexLoop {
+        private static final int[][] DIGIT = {{'0', '9'}};
+        private static final int[][] WORD = {{'0', '9'}, {'A', 'Z'}, {'_', '_'}, {'a', 'z'}};
+        private static final int[][] SPACE = {{'\t', '\r'}, {' ', ' '}};
+        private static final int[][] SURROGATES = {{0xd800, 0xdfff}};
+        private static final int[][] LINE_END = {{'\n', '\n'}, {'\r', '\r'}, {'\u0085', '\u0085'}, {'\u2028', '\u2029'}};
+
+        final int[][] ranges;
+        final int min;
+        final int max;
+
+        private RegexLoop(int[][] ranges, int min, int max) {
+            this.ranges = ranges;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * the atoms of ^-anchored regex made only of classes, escapes, . and plain chars with greedy
+         * quantifiers, or null when it needs the matcher
+         */
+        static List<RegexLoop> lower(Pattern regex) {
+            final String pattern = regex.pattern();
+            if (regex.flags() != 0 || !pattern.startsWith("^")) {
+                return null;
+            }
+
+            final List<RegexLoop> atoms = new ArrayList<>();
+            int i = 1;
+            while (i < pattern.length()) {
+                final int[][] ranges;
+                final char c = pattern.charAt(i);
+                if (c == '[') {
+                    final int close = classEnd(pattern, i + 1);
+                    ranges = close < 0 ? null : charClass(pattern.substring(i + 1, close));
+                    i = close + 1;
+                } else if (c == '\\' && i + 1 < pattern.length()) {
+                    ranges = escape(pattern.charAt(i + 1));
+                    i += 2;
+                } else if (c == '.') {
+                    ranges = complement(LINE_END);
+                    i++;
+                } else if ("()|$^*+?{}]".indexOf(c) < 0) {
+                    ranges = new int[][]{{c, c}};
+                    i++;
+                } else {
+                    ranges = null;
+                }
+                if (ranges == null) {
+                    return null;
+                }
+
+                int min = 1;
+                int max = 1;
+                if (i < pattern.length()) {
+                    final char q = pattern.charAt(i);
+                    if (q == '*' || q == '+' || q == '?') {
+                        min = q == '+' ? 1 : 0;
+                        max = q == '?' ? 1 : Integer.MAX_VALUE;
+                        i++;
+                    } else if (q == '{') {
+                        final int close = pattern.indexOf('}', i);
+                        final String[] bounds = close < 0 ? new String[0] : pattern.substring(i + 1, close).split(",", -1);
+                        if (bounds.length == 0 || bounds.length > 2 || !bounds[0].matches("\\d{1,6}")
+                                || (bounds.length == 2 && !bounds[1].matches("\\d{0,6}"))) {
+                            return null;
+                        }
+                        min = Integer.parseInt(bounds[0]);
+                        max = bounds.length == 1 ? min : bounds[1].isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(bounds[1]);
+                        if (max < min || max == 0) {
+                            return null;
+                        }
+                        i = close + 1;
+                    }
+                    // lazy and possessive quantifiers
+                    if (i < pattern.length() && (pattern.charAt(i) == '?' || pattern.charAt(i) == '+')
+                            && "*+?}".indexOf(pattern.charAt(i - 1)) >= 0) {
+                        return null;
+                    }
+                }
+                // the matcher takes a surrogate pair as one char, the loop as two, which only ends the same way
+                // when the class has both halves and the count is unbounded
+                if (overlaps(ranges, SURROGATES)
+                        && (min > 1 || max != Integer.MAX_VALUE || overlaps(complement(ranges), SURROGATES))) {
+                    return null;
+                }
+                atoms.add(new RegexLoop(ranges, min, max));
+            }
+
+            // a variable atom must not take a char that the atoms after it, up to the first required one, could
+            for (int a = 0; a < atoms.size(); a++) {
+                if (atoms.get(a).min == atoms.get(a).max) {
+                    continue;
+                }
+                for (int next = a + 1; next < atoms.size(); next++) {
+                    if (overlaps(atoms.get(a).ranges, atoms.get(next).ranges)) {
+                        return null;
+                    }
+                    if (atoms.get(next).min > 0) {
+                        break;
+                    }
+                }
+            }
+            return atoms.isEmpty() ? null : atoms;
+        }
+
+        private static int classEnd(String pattern, int from) {
+            for (int i = from; i < pattern.length(); i++) {
+                final char c = pattern.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == ']' && i > from) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * the body of [...] made of chars, escapes and ranges, or null for nested classes and intersections
+         */
+        private static int[][] charClass(String body) {
+            final boolean negated = body.startsWith("^");
+            final List<int[]> ranges = new ArrayList<>();
+            int i = negated ? 1 : 0;
+            if (i == body.length()) {
+                return null;
+            }
+            while (i < body.length()) {
+                final char c = body.charAt(i);
+                int lo;
+                if (c == '[' || (c == '&' && body.startsWith("&&", i))) {
+                    return null;
+                } else if (c == '\\') {
+                    final int[][] escaped = escape(body.charAt(i + 1));
+                    if (escaped == null) {
+                        return null;
+                    }
+                    i += 2;
+                    if (escaped.length != 1 || escaped[0][0] != escaped[0][1]) {
+                        ranges.addAll(Arrays.asList(escaped));
+                        continue;
+                    }
+                    lo = escaped[0][0];
+                } else {
+                    lo = c;
+                    i++;
+                }
+
+                if (i + 1 < body.length() && body.charAt(i) == '-') {
+                    final char h = body.charAt(i + 1);
+                    final int[][] hi = h == '\\' ? (i + 2 < body.length() ? escape(body.charAt(i + 2)) : null) : new int[][]{{h, h}};
+                    if (hi == null || hi.length != 1 || hi[0][0] != hi[0][1] || hi[0][0] < lo) {
+                        return null;
+                    }
+                    ranges.add(new int[]{lo, hi[0][0]});
+                    i += h == '\\' ? 3 : 2;
+                } else {
+                    ranges.add(new int[]{lo, lo});
+                }
+            }
+
+            final int[][] union = normalize(ranges);
+            return negated ? complement(union) : union;
+        }
+
+        /**
+         * the chars of \\c, or null for escapes with no fixed set, like \\b, \\p{..} or back references
+         */
+        private static int[][] escape(char c) {
+            switch (c) {
+                case 'd':
+                    return DIGIT;
+                case 'D':
+                    return complement(DIGIT);
+                case 'w':
+                    return WORD;
+                case 'W':
+                    return complement(WORD);
+                case 's':
+                    return SPACE;
+                case 'S':
+                    return complement(SPACE);
+                case 't':
+                    return new int[][]{{'\t', '\t'}};
+                case 'n':
+                    return new int[][]{{'\n', '\n'}};
+                case 'r':
+                    return new int[][]{{'\r', '\r'}};
+                case 'f':
+                    return new int[][]{{'\f', '\f'}};
+                default:
+                    // an escaped punctuation char is itself
+                    return Character.isLetterOrDigit(c) || c > 0x7f ? null : new int[][]{{c, c}};
+            }
+        }
+
+        private static int[][] normalize(List<int[]> ranges) {
+            ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+            final List<int[]> merged = new ArrayList<>();
+            for (int[] range : ranges) {
+                final int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range[0] <= last[1] + 1) {
+                    last[1] = Math.max(last[1], range[1]);
+                } else {
+                    merged.add(new int[]{range[0], range[1]});
+                }
+            }
+            return merged.toArray(new int[0][]);
+        }
+
+        private static int[][] complement(int[][] ranges) {
+            final List<int[]> out = new ArrayList<>();
+            int from = 0;
+            for (int[] range : ranges) {
+                if (range[0] > from) {
+                    out.add(new int[]{from, range[0] - 1});
+                }
+                from = range[1] + 1;
+            }
+            if (from <= Character.MAX_VALUE) {
+                out.add(new int[]{from, Character.MAX_VALUE});
+            }
+            return out.toArray(new int[0][]);
+        }
+
+        private static boolean overlaps(int[][] a, int[][] b) {
+            for (int[] x : a) {
+                for (int[] y : b) {
+                    if (x[0] <= y[1] && y[0] <= x[1]) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // a loop with a bound to check, not a plain * or a fixed count
+        boolean counted() {
+            return min != max && (min > 0 || max != Integer.MAX_VALUE);
+        }
+
+        String test(String c) {
+            if (ranges.length == 0) {
+                return "false";
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (int[] range : ranges) {
+                sb.append(sb.length() == 0 ? "" : " || ");
+                if (range[0] == range[1]) {
+                    sb.append(c).append(" == ").append(javaChar((char) range[0]));
+                } else if (range[0] == 0) {
+                    sb.append(c).append(" <= ").append(javaChar((char) range[1]));
+                } else if (range[1] == Character.MAX_VALUE) {
+                    sb.append(c).append(" >= ").append(javaChar((char) range[0]));
+                } else {
+                    sb.append(c).append(" >= ").append(javaChar((char) range[0]))
+                            .append(" && ").append(c).append(" <= ").append(javaChar((char) range[1]));
+                }
+            }
+            return ranges.length == 1 ? sb.toString() : "(" + sb + ")";
+        }
+    }
+
+    private void skipper(Body b, Skipper skipper) {
+        final StringBuilder test = new StringBuilder();
+        for (char c : skipper.spaceChars.toCharArray()) {
+            test.append(test.length() == 0 ? "" : " || ").append("c == ").append(javaChar(c));
+        }
+
+        b.line("int i = index;");
+        b.line("outer:");
+        b.line("while (i < len) {");
+        b.line("    final char c = input.charAt(i);");
+        if (test.length() > 0) {
+            b.line("    if (" + test + ") {");
+            b.line("        i++;");
+            b.line("        continue;");
+            b.line("    }");
+        }
+        for (Skipper.Comment comment : skipper.comments) {
+            final String open = javaString(comment.open);
+            b.line("    if (input.startsWith(" + open + ", i)) {");
+            if (comment.close == null) {
+                b.line("        final int nl = input.indexOf('\\n', i + " + comment.open.length() + ");");
+                b.line("        i = nl < 0 ? len : nl + 1;");
+            } else {
+                b.line("        final int close = input.indexOf(" + javaString(comment.close) + ", i + " + comment.open.length() + ");");
+                b.line("        if (close < 0) return i;");
+                b.line("        i = close + " + comment.close.length() + ";");
+            }
+            b.line("        continue outer;");
+            b.line("    }");
+        }
+        b.line("    return i;");
+        b.line("}");
+        b.line("return i;");
+    }
+
+    private void repeat(Body b, Node node) {
+        final Parsec<?> child = node.children.get(0);
+        if (node.guarded) {
+            // foldMany: stops at a failure or at an iteration consuming nothing
+            b.line("int i = index;");
+            b.line("while (true) {");
+            b.line("    final int r = " + call(child, "i") + ";");
+            b.line("    if (r < 0 || r == i) return i;");
+            b.line("    i = r;");
+            b.line("}");
+            return;
+        }
+
+        b.line("int i = index;");
+        b.line("int count = 0;");
+        b.line("while (count < " + node.max + ") {");
+        b.line("    final int r = " + call(child, "i") + ";");
+        b.line("    if (r < 0) {");
+        b.line("        if (count >= " + node.min + ") break;");
+        b.line("        return fail(-1 - r, \"match \" + expected + \" between [" + node.min + "," + node.max + "] times\");");
+        b.line("    }");
+        b.line("    i = r;");
+        b.line("    count++;");
+        b.line("}");
+        b.line("return i;");
+    }
+
+    private void separated(Body b, Node node) {
+        final Parsec<?> p = node.children.get(0);
+        final Parsec<?> sep = node.children.get(1);
+        b.line("int i = " + call(p, "index") + ";");
+        b.line("if (i < 0) return i;");
+        b.line("int count = 0;");
+        b.line("while (true) {");
+        b.line("    final int s = " + call(sep, "i") + ";");
+        b.line("    if (s < 0) {");
+        b.line("        if (count >= " + node.min + ") break;");
+        b.line("        return s;");
+        b.line("    }");
+        b.line("    i = " + call(p, "s") + ";");
+        b.line("    if (i < 0) return i;");
+        b.line("    count++;");
+        b.line("    if (count >= " + node.max + ") break;");
+        b.line("}");
+        b.line("return i;");
+    }
+
+    private String source(Parsec<?> root, String packageName, String className) {
+        final StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import java.util.Arrays;\n")
+                .append("import java.util.regex.Matcher;\n")
+                .append("import java.util.regex.Pattern;\n\n")
+                .append("/**\n")
+                .append(" * generated by xin.ParserGenerator from ").append(Grammar.node(root).name.replace("*/", "* /"))
+                .append(", do not edit.\n")
+                .append(" * recognizes the input without building results\n")
+                .append(" */\n")
+                .append("@SuppressWarnings(\"unused\")\n")
+                .append("public final class ").append(className).append(" {\n\n")
+                .append(fields).append(fields.length() > 0 ? "\n" : "")
+                .append("    private final String input;\n")
+                .append("    private final int len;\n")
+                .append("    private Object expected;\n\n")
+                .append("    private ").append(className).append("(String input) {\n")
+                .append("        this.input = input;\n")
+                .append("        this.len = input.length();\n")
+                .append("    }\n\n")
+                .append("    /**\n")
+                .append("     * end index of the match at index, or -1 - the index of the failure\n")
+                .append("     */\n")
+                .append("    public static int match(String input, int index) {\n")
+                .append("        return new ").append(className).append("(input).p0(index);\n")
+                .append("    }\n\n")
+                .append("    public static boolean matches(String input) {\n")
+                .append("        return match(input, 0) == input.length();\n")
+                .append("    }\n\n")
+                .append("    /**\n")
+                .append("     * end index of the match at 0, or an IllegalArgumentException telling what was expected where\n")
+                .append("     */\n")
+                .append("    public static int check(String input) {\n")
+                .append("        final ").append(className).append(" recognizer = new ").append(className).append("(input);\n")
+                .append("        final int r = recognizer.p0(0);\n")
+                .append("        if (r < 0) {\n")
+                .append("            throw new IllegalArgumentException(\"expect: \" + recognizer.expected + \" on input index: \" + (-1 - r));\n")
+                .append("        }\n")
+                .append("        return r;\n")
+                .append("    }\n\n")
+                .append("    private int fail(int index, Object expected) {\n")
+                .append("        this.expected = expected;\n")
+                .append("        return -1 - index;\n")
+                .append("    }\n");
+        if (usesIntegers) {
+            sb.append(INTEGER);
+        }
+        if (usesDecimals) {
+            sb.append(DECIMAL);
+        }
+        sb.append(methods).append("}\n");
+        return sb.toString();
+    }
+
+    // the syntax and range checks of Numbers, without computing values
+    private static final String INTEGER = "\n" +
+            "    private int integer(int index, long min, long max, String inRange) {\n" +
+            "        int i = index;\n" +
+            "        boolean negative = false;\n" +
+            "        if (i < len && (input.charAt(i) == '-' || input.charAt(i) == '+')) {\n" +
+            "            negative = input.charAt(i) == '-';\n" +
+            "            i++;\n" +
+            "        }\n" +
+            "        final int start = i;\n" +
+            "        final long limit = negative ? min : -max;\n" +
+            "        final long multmin = limit / 10;\n" +
+            "        long acc = 0;\n" +
+            "        while (i < len) {\n" +
+            "            final int d = input.charAt(i) - '0';\n" +
+            "            if (d < 0 || d > 9) break;\n" +
+            "            if (acc < multmin || acc * 10 < limit + d) return fail(index, inRange);\n" +
+            "            acc = acc * 10 - d;\n" +
+            "            i++;\n" +
+            "        }\n" +
+            "        return i == start ? fail(index, \"an integer\") : i;\n" +
+            "    }\n";
+
+    private static final String DECIMAL = "\n" +
+            "    private boolean isDigit(int i) {\n" +
+            "        return i < len && input.charAt(i) >= '0' && input.charAt(i) <= '9';\n" +
+            "    }\n\n" +
+            "    private int decimal(int index, boolean json) {\n" +
+            "        int i = index;\n" +
+            "        if (i < len && (input.charAt(i) == '-' || (!json && input.charAt(i) == '+'))) i++;\n" +
+            "        if (!isDigit(i)) return fail(index, json ? \"a json number\" : \"a decimal\");\n" +
+            "        if (json && input.charAt(i) == '0') {\n" +
+            "            i++;\n" +
+            "        } else {\n" +
+            "            while (isDigit(i)) i++;\n" +
+            "        }\n" +
+            "        if (i < len && input.charAt(i) == '.' && isDigit(i + 1)) {\n" +
+            "            i++;\n" +
+            "            while (isDigit(i)) i++;\n" +
+            "        }\n" +
+            "        if (json && i < len && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {\n" +
+            "            int j = i + 1;\n" +
+            "            if (j < len && (input.charAt(j) == '-' || input.charAt(j) == '+')) j++;\n" +
+            "            if (isDigit(j)) {\n" +
+            "                while (isDigit(j)) j++;\n" +
+            "                i = j;\n" +
+            "            }\n" +
+            "        }\n" +
+            "        return i;\n" +
+            "    }\n";
+
+    private static final class Body {
+        private final StringBuilder sb;
+
+        Body(StringBuilder sb) {
+            this.sb = sb;
+        }
+
+        void line(String line) {
+            sb.append("        ").append(line).append('\n');
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // java literals
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static String javaString(String str) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (char c : str.toCharArray()) {
+            sb.append(c == '\'' ? "'" : escape(c));
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String javaChar(char c) {
+        return "'" + (c == '"' ? "\"" : escape(c)) + "'";
+    }
+
+    private static String escape(char c) {
+        switch (c) {
+            case '\\':
+                return "\\\\";
+            case '"':
+                return "\\\"";
+            case '\'':
+                return "\\'";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            default:
+                // a unicode escape is unescaped before lexing, fine for all but the chars handled above
+                if (c < 0x20) {
+                    return String.format("\\%03o", (int) c);
+                }
+                return c < 0x7f ? String.valueOf(c) : String.format("\\u%04x", (int) c);
+        }
+    }
+}
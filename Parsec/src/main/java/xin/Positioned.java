@@ -0,0 +1,60 @@
+package xin;
+
+import java.util.Objects;
+
+/**
+ * a result with the input range it was parsed from, see {@link Parsec#withPosition(Parsec)}.
+ * only offsets are kept, line and column are looked up in the shared {@link LineIndex} when asked for
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class Positioned<T> {
+
+    public final T value;
+    public final int startOffset;
+    public final int endOffset;
+
+    private final LineIndex lines;
+
+    Positioned(T value, int startOffset, int endOffset, LineIndex lines) {
+        this.value = value;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.lines = lines;
+    }
+
+    public SourcePosition start() {
+        return lines.position(startOffset);
+    }
+
+    public SourcePosition end() {
+        return lines.position(endOffset);
+    }
+
+    LineIndex lines() {
+        return lines;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Positioned<?> that = (Positioned<?>) o;
+        return startOffset == that.startOffset &&
+                endOffset == that.endOffset &&
+                Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, startOffset, endOffset);
+    }
+
+    @Override
+    public String toString() {
+        return "Positioned{" +
+                "value=" + value +
+                ", start=" + start() +
+                ", end=" + end() +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+package xin;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * outcome of {@link Parsec#parseCollectingErrors(String, int)}: whatever could be parsed, and every error
+ * recovered from (or finally failed on) along the way, in input order
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class Recovered<T> {
+
+    /**
+     * the (partial) result, null when the parse failed outside of any {@link Parsec#recover}
+     */
+    public final T value;
+    public final List<Parsec.ParseException> errors;
+    /**
+     * the parse was stopped after reaching the max number of errors, later errors are not reported
+     */
+    public final boolean truncated;
+
+    Recovered(T value, List<Parsec.ParseException> errors, boolean truncated) {
+        this.value = value;
+        this.errors = Collections.unmodifiableList(errors);
+        this.truncated = truncated;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Recovered{" +
+                "value=" + value +
+                ", errors=" + errors.size() +
+                ", truncated=" + truncated +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package xin;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * a forward reference for recursive grammars, created by {@link Parsec#ref()} or {@link Parsec#lazy(Supplier)}.
+ * <p>
+ * a rule is built once, used by reference where it recurses, and the reference is then set to it, so the
+ * whole grammar is a single graph instead of a copy of each rule per use. once resolved a ref only costs
+ * one field read per parse
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class Ref<T> implements Parsec<T> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Ref, Parsec> TARGET =
+            AtomicReferenceFieldUpdater.newUpdater(Ref.class, Parsec.class, "target");
+
+    // null for a ref set by hand
+    private final Supplier<? extends Parsec<T>> supplier;
+    private volatile Parsec<T> target;
+
+    Ref(Supplier<? extends Parsec<T>> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * defines the referenced parser, once
+     */
+    public void set(Parsec<? extends T> parsec) {
+        Parsec._check(supplier == null, "a lazy parser is defined by its supplier");
+        Parsec._check(parsec != null && parsec != this, "a ref can not refer to null or itself");
+        Parsec._check(TARGET.compareAndSet(this, null, parsec), "ref is already set");
+    }
+
+    @Override
+    public Value<T> _parse(String input, int index) {
+        final Parsec<T> parsec = target;
+        return (parsec != null ? parsec : resolve())._parse(input, index);
+    }
+
+    private Parsec<T> resolve() {
+        if (supplier == null) {
+            throw new IllegalStateException("ref used before it was set");
+        }
+
+        final Parsec<T> parsec = supplier.get();
+        Parsec._check(parsec != null && parsec != this, "lazy supplier gave null or the lazy parser itself");
+        // threads racing here all end up with the first parser published
+        TARGET.compareAndSet(this, null, parsec);
+        return target;
+    }
+
+    boolean isLazy() {
+        return supplier != null;
+    }
+
+    /**
+     * the referenced parser, resolving a lazy one, or null while a ref is not set
+     */
+    Parsec<T> resolved() {
+        final Parsec<T> parsec = target;
+        return parsec != null || supplier == null ? parsec : resolve();
+    }
+}
@@ -0,0 +1,222 @@
+package xin;
+
+import xin.DoubleParsec.DoubleValue;
+import xin.IntParsec.IntValue;
+import xin.LongParsec.LongValue;
+
+import java.util.Map;
+
+/**
+ * whitespace and comments between tokens, created by {@link Parsec#withSkipper(String, Comment...)}.
+ * <p>
+ * the token primitives here skip what follows them in one char loop, without allocating the skipped text
+ * the way {@code p.skip(spaces())} does. since tokens skip trailing text, every alternative tried at
+ * a position already starts past it. when backtracking parses the same tokens again, their trailing text is
+ * not scanned again either: within a parse, the text at a position is skipped at most once.
+ * use {@link #spaces()} once for what comes before the first token
+ */
+// not final so the tests can count skips, the constructor keeps it closed outside the package
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class Skipper {
+
+    public static final class Comment {
+        final String open;
+        // null for a line comment
+        final String close;
+
+        Comment(String open, String close) {
+            Parsec._check(!open.isEmpty(), "comment needs a non empty start");
+            Parsec._check(close == null || !close.isEmpty(), "block comment needs a non empty end");
+            this.open = open;
+            this.close = close;
+        }
+    }
+
+    private final boolean[] ascii = new boolean[128];
+    final String spaceChars;
+    private final String nonAscii;
+    final Comment[] comments;
+
+    private final Parsec<Object> spaces = new Grammar.Rule<Object>(Grammar.skipper(this)) {
+        @Override
+        public Parsec.Value<Object> _parse(String input, int index) {
+            return Parsec.Value.success(ParseContext.skip(Skipper.this, input, index), null);
+        }
+    };
+
+    Skipper(String spaceChars, Comment... comments) {
+        this.spaceChars = spaceChars;
+        final StringBuilder others = new StringBuilder();
+        for (int i = 0; i < spaceChars.length(); i++) {
+            final char c = spaceChars.charAt(i);
+            if (c < 128) {
+                ascii[c] = true;
+            } else {
+                others.append(c);
+            }
+        }
+        this.nonAscii = others.toString();
+        this.comments = comments.clone();
+    }
+
+    private boolean isSpace(char c) {
+        return c < 128 ? ascii[c] : nonAscii.indexOf(c) >= 0;
+    }
+
+    /**
+     * index after the spaces and comments starting at index. an unterminated block comment is not skipped,
+     * so the next token fails right at its start
+     */
+    public int skip(String input, int index) {
+        final int len = input.length();
+        int i = index;
+        outer:
+        while (i < len) {
+            if (isSpace(input.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            for (Comment comment : comments) {
+                if (!input.startsWith(comment.open, i)) {
+                    // the input ends inside what may be the start of a comment
+                    if (len - i < comment.open.length() && input.regionMatches(i, comment.open, 0, len - i)) {
+                        ParseContext.hitEnd();
+                    }
+                    continue;
+                }
+
+                if (comment.close == null) {
+                    final int nl = input.indexOf('\n', i + comment.open.length());
+                    i = nl < 0 ? len : nl + 1;
+                    continue outer;
+                }
+
+                final int close = input.indexOf(comment.close, i + comment.open.length());
+                if (close < 0) {
+                    ParseContext.hitEnd();
+                    return i;
+                }
+                i = close + comment.close.length();
+                continue outer;
+            }
+
+            return i;
+        }
+        ParseContext.hitEnd();
+        return i;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // tokens
+    ///////////////////////////////////////////////////////////////////////////
+
+    public Parsec<Object> spaces() {
+        return spaces;
+    }
+
+    public <T> Parsec<T> token(Parsec<T> parsec) {
+        return new Grammar.Rule<T>(Grammar.sequence("token", parsec, spaces)) {
+            @Override
+            public Parsec.Value<T> _parse(String input, int index) {
+                final Parsec.Value<T> v = parsec._parse(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                final int end = ParseContext.skip(Skipper.this, input, v.index);
+                return end == v.index ? v : Parsec.Value.success(end, v.value);
+            }
+        };
+    }
+
+    /**
+     * {@link #token(Parsec)} keeping the primitive parser, named apart since a lambda would fit either
+     */
+    public IntParsec intToken(IntParsec parsec) {
+        return new Grammar.IntRule(Grammar.sequence("token", parsec, spaces)) {
+            @Override
+            public IntValue _parseInt(String input, int index) {
+                final IntValue v = parsec._parseInt(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                final int end = ParseContext.skip(Skipper.this, input, v.index);
+                return end == v.index ? v : IntValue.success(end, v.value);
+            }
+        };
+    }
+
+    /**
+     * {@link #token(Parsec)} keeping the primitive parser, named apart since a lambda would fit either
+     */
+    public LongParsec longToken(LongParsec parsec) {
+        return new Grammar.LongRule(Grammar.sequence("token", parsec, spaces)) {
+            @Override
+            public LongValue _parseLong(String input, int index) {
+                final LongValue v = parsec._parseLong(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                final int end = ParseContext.skip(Skipper.this, input, v.index);
+                return end == v.index ? v : LongValue.success(end, v.value);
+            }
+        };
+    }
+
+    /**
+     * {@link #token(Parsec)} keeping the primitive parser, named apart since a lambda would fit either
+     */
+    public DoubleParsec doubleToken(DoubleParsec parsec) {
+        return new Grammar.DoubleRule(Grammar.sequence("token", parsec, spaces)) {
+            @Override
+            public DoubleValue _parseDouble(String input, int index) {
+                final DoubleValue v = parsec._parseDouble(input, index);
+                if (!v.status) {
+                    return v;
+                }
+
+                final int end = ParseContext.skip(Skipper.this, input, v.index);
+                return end == v.index ? v : DoubleValue.success(end, v.value);
+            }
+        };
+    }
+
+    public Parsec<Character> char_(char c) {
+        return token(Parsec.char_(c));
+    }
+
+    public Parsec<String> string(String str) {
+        return token(Parsec.string(str));
+    }
+
+    public Parsec<String> literals(String... literals) {
+        return token(Parsec.literals(literals));
+    }
+
+    public <T> Parsec<T> literalMap(Map<String, T> literals) {
+        return token(Parsec.literalMap(literals));
+    }
+
+    public Parsec<String> regex(String regex) {
+        return token(Parsec.regex(regex));
+    }
+
+    public IntParsec integer() {
+        return intToken(Parsec.integer());
+    }
+
+    public LongParsec long_() {
+        return longToken(Parsec.long_());
+    }
+
+    public DoubleParsec decimal() {
+        return doubleToken(Parsec.decimal());
+    }
+
+    public DoubleParsec jsonNumber() {
+        return doubleToken(Parsec.jsonNumber());
+    }
+}
@@ -0,0 +1,122 @@
+package xin;
+
+/**
+ * a view of {@code input[start, end)}, nothing is copied until {@link #toString()} is called.
+ * <p>
+ * hashCode is the same as the one of the equivalent String, but equals only accepts other Slices
+ * (String.equals would never agree), use {@link #contentEquals(CharSequence)} to compare with Strings.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class Slice implements CharSequence, Comparable<CharSequence> {
+
+    private final String input;
+    private final int start;
+    private final int end;
+
+    private int hash;
+
+    private Slice(String input, int start, int end) {
+        this.input = input;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static Slice of(String input, int start, int end) {
+        Parsec._check(0 <= start && start <= end && end <= input.length(), "slice out of input bounds");
+        return new Slice(input, start, end);
+    }
+
+    public static Slice of(String str) {
+        return new Slice(str, 0, str.length());
+    }
+
+    public String input() {
+        return input;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + (end - start));
+        }
+        return input.charAt(start + index);
+    }
+
+    @Override
+    public Slice subSequence(int start, int end) {
+        Parsec._check(0 <= start && start <= end && end <= length(), "subSequence out of slice bounds");
+        return new Slice(input, this.start + start, this.start + end);
+    }
+
+    public boolean contentEquals(CharSequence cs) {
+        final int len = end - start;
+        if (cs.length() != len) {
+            return false;
+        }
+        if (cs instanceof String) {
+            return input.regionMatches(start, (String) cs, 0, len);
+        }
+        for (int i = 0; i < len; i++) {
+            if (input.charAt(start + i) != cs.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int compareTo(CharSequence other) {
+        final int len = end - start;
+        final int otherLen = other.length();
+        final int lim = Math.min(len, otherLen);
+        for (int i = 0; i < lim; i++) {
+            final char c1 = input.charAt(start + i);
+            final char c2 = other.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len - otherLen;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final Slice slice = (Slice) o;
+        return hashCode() == slice.hashCode() && contentEquals(slice);
+    }
+
+    /**
+     * same algorithm as String.hashCode, cached on first use
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && end > start) {
+            for (int i = start; i < end; i++) {
+                h = 31 * h + input.charAt(i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return input.substring(start, end);
+    }
+}
@@ -0,0 +1,40 @@
+package xin;
+
+import java.util.Objects;
+
+/**
+ * line and column (both from 1) of an offset in the input, see {@link LineIndex}
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SourcePosition {
+
+    public final int offset;
+    public final int line;
+    public final int column;
+
+    public SourcePosition(int offset, int line, int column) {
+        this.offset = offset;
+        this.line = line;
+        this.column = column;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SourcePosition that = (SourcePosition) o;
+        return offset == that.offset &&
+                line == that.line &&
+                column == that.column;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(offset, line, column);
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + column;
+    }
+}
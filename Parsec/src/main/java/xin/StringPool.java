@@ -0,0 +1,105 @@
+package xin;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * bounded, thread safe string deduplication behind {@link Parsec#intern(Parsec)}.
+ * <p>
+ * a direct mapped table: a range of the input is hashed in place and compared with the one string in its slot,
+ * only on a miss is the range copied into a new String, which then replaces whatever was in the slot.
+ * so memory never grows past capacity, and a hot set of keys smaller than capacity ends up shared.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class StringPool {
+
+    private static final StringPool SHARED = new StringPool(4096);
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public StringPool(int capacity) {
+        Parsec._check(capacity > 0 && capacity <= 1 << 30, "capacity should be in (0, 2^30]");
+        final int n = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, n));
+        this.mask = slots.length() - 1;
+    }
+
+    /**
+     * the pool used by {@link Parsec#intern(Parsec)}
+     */
+    public static StringPool shared() {
+        return SHARED;
+    }
+
+    public String intern(String input, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + input.charAt(i);
+        }
+
+        final int slot = (h ^ (h >>> 16)) & mask;
+        final String candidate = slots.get(slot);
+        final int len = end - start;
+        if (candidate != null && candidate.length() == len && candidate.regionMatches(0, input, start, len)) {
+            hits.increment();
+            return candidate;
+        }
+
+        misses.increment();
+        final String str = input.substring(start, end);
+        if (candidate == null && slots.compareAndSet(slot, null, str)) {
+            size.incrementAndGet();
+        } else {
+            slots.lazySet(slot, str);
+        }
+        return str;
+    }
+
+    public String intern(String str) {
+        return intern(str, 0, str.length());
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public double hitRatio() {
+        final long hits = hits();
+        final long total = hits + misses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * slots holding a string, at most {@link #capacity()}
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    @Override
+    public String toString() {
+        return "StringPool{" +
+                "size=" + size() +
+                ", capacity=" + capacity() +
+                ", hits=" + hits() +
+                ", misses=" + misses() +
+                '}';
+    }
+}
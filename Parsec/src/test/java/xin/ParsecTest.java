@@ -2,15 +2,39 @@ package xin;
 
 import org.junit.Test;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
 import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static xin.ParameterizedTest.param;
 import static xin.ParameterizedTest.parameterized_test;
 import static xin.Parsec.*;
@@ -94,6 +118,104 @@ public class ParsecTest {
         );
     }
 
+    @Test
+    public void test_intern() {
+        final StringPool pool = new StringPool(16);
+        final Parsec<List<String>> keys = many(intern(regexSlice("\\w+"), pool).skip(optional(char_(','))));
+
+        final List<String> first = keys.parse("id,name,id");
+        final List<String> second = keys.parse("name,id");
+        assertThat(first, equalTo(asList("id", "name", "id")));
+        assertThat(first.get(0) == first.get(2), equalTo(true));
+        assertThat(second.get(0) == first.get(1), equalTo(true));
+
+        assertThat(pool.misses(), equalTo(2L));
+        assertThat(pool.hits(), equalTo(3L));
+        assertThat(pool.size(), equalTo(2));
+        assertThat(pool.hitRatio(), equalTo(0.6));
+
+        parameterized_test(
+                param(intern(string("xm"), pool), "xmxm", Value.success(2, "xm")),
+                param(intern(string("xm"), pool), "xh", Value.failure(1, "xm"))
+        );
+    }
+
+    @Test
+    public void test_literals() {
+        final Map<String, Integer> ops = new LinkedHashMap<>();
+        ops.put("=", 1);
+        ops.put("==", 2);
+        ops.put("===", 3);
+        ops.put("!=", 4);
+
+        parameterized_test(
+                param(literals("if", "in", "int", "import"), "int x", Value.success(3, "int")),
+                param(literals("if", "in", "int", "import"), "inx", Value.success(2, "in")),
+                param(literals("if", "in", "int", "import"), "impor", Value.failure(0, "[if, in, int, import]")),
+                param(literals("if", "in", "int", "import"), "", Value.failure(0, "[if, in, int, import]")),
+                param(literalMap(ops), "== 1", Value.success(2, 2)),
+                param(literalMap(ops), "====", Value.success(3, 3)),
+                param(literalMap(ops), "!", Value.failure(0, "[=, ==, ===, !=]")),
+                param(many(literals("ab", "a", "b")), "abba", Value.success(4, asList("ab", "b", "a")))
+        );
+    }
+
+    @Test
+    public void test_skipper() {
+        final Skipper skipper = withSkipper(" \t\r\n", lineComment("//"), blockComment("/*", "*/"));
+
+        parameterized_test(
+                param(skipper.string("let"), "let  // comment\n /* a\n block */ x", Value.success(32, "let")),
+                param(skipper.string("let"), "let/**/x", Value.success(7, "let")),
+                param(skipper.string("let"), "letx", Value.success(3, "let")),
+                param(skipper.string("let"), "let /* open", Value.success(4, "let")),
+                param(skipper.string("let"), "lex", Value.failure(2, "let")),
+                param(skipper.integer(), "12 // twelve", Value.success(12, 12)),
+                param(skipper.spaces(), "  x", Value.success(2, null)),
+                param(skipper.spaces().compose(many(skipper.jsonNumber())), " 1 2\t3\n", Value.success(7, asList(1.0, 2.0, 3.0))),
+                param(tryChoice(joint(skipper.char_('a'), skipper.char_('b')), joint(skipper.char_('a'), skipper.char_('c'))),
+                        "a /* x */ c", Value.success(11, asList('a', 'c'))),
+                param(skipper.intToken((input, index) -> IntParsec.IntValue.success(index + 1, 7)), "x  y", Value.success(3, 7))
+        );
+
+        // the second alternative parses a and b again, the text after them is not scanned again
+        final AtomicInteger skips = new AtomicInteger();
+        final Skipper counting = new Skipper(" ", blockComment("/*", "*/")) {
+            @Override
+            public int skip(String input, int index) {
+                skips.incrementAndGet();
+                return super.skip(input, index);
+            }
+        };
+        final Parsec<Object> backtracking = tryChoice(
+                joint(counting.char_('a'), counting.char_('b'), counting.char_('c')),
+                joint(counting.char_('a'), counting.char_('b'), counting.char_('d')));
+        assertThat(backtracking.parse("a /* x */ b d"), equalTo(asList('a', 'b', 'd')));
+        assertThat(skips.get(), equalTo(3));
+    }
+
+    @Test
+    public void test_slice() {
+        parameterized_test(
+                param(slice(joint(char_('a'), regex("\\d+"))), "a123b", Value.success(4, Slice.of("a123b", 0, 4))),
+                param(slice(joint(char_('a'), regex("\\d+"))), "ab", Value.failure(1, "^\\d+")),
+                param(stringSlice("hello"), "hello world", Value.success(5, Slice.of("hello"))),
+                param(stringSlice("hello"), "helllo", Value.failure(4, "hello")),
+                param(spacesSlice(), " \t\n x", Value.success(4, Slice.of(" \t\n "))),
+                param(spacesSlice(), "x", Value.success(0, Slice.of(""))),
+                param(regexSlice("\\d+"), "123abc", Value.success(3, Slice.of("123"))),
+                param(regexSlice("\\d+"), "abc213", Value.failure(0, "^\\d+")),
+                param(char_('-').compose(regexSlice("\\d+")), "-12", Value.success(3, Slice.of("-12", 1, 3)))
+        );
+
+        final Slice slice = Slice.of("let x = 1", 4, 5);
+        assertThat(slice.toString(), equalTo("x"));
+        assertThat(slice.hashCode(), equalTo("x".hashCode()));
+        assertThat(slice.contentEquals("x"), equalTo(true));
+        assertThat(slice.compareTo("y") < 0, equalTo(true));
+        assertThat(Slice.of("let x = 1").subSequence(4, 9), equalTo(Slice.of("x = 1")));
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // 
     ///////////////////////////////////////////////////////////////////////////
@@ -260,6 +382,76 @@ public class ParsecTest {
         );
     }
 
+    @Test
+    public void test_numbers() {
+        parameterized_test(
+                // integer
+                param(integer(), "123abc", Value.success(3, 123)),
+                param(integer(), "-42", Value.success(3, -42)),
+                param(integer(), "+7", Value.success(2, 7)),
+                param(integer(), "2147483647", Value.success(10, Integer.MAX_VALUE)),
+                param(integer(), "-2147483648", Value.success(11, Integer.MIN_VALUE)),
+                param(integer(), "2147483648", Value.failure(0, "an integer in int range")),
+                param(integer(), "-x", Value.failure(0, "an integer")),
+
+                // long_
+                param(long_(), "-9223372036854775808", Value.success(20, Long.MIN_VALUE)),
+                param(long_(), "9223372036854775808", Value.failure(0, "an integer in long range")),
+
+                // decimal
+                param(decimal(), "123.45", Value.success(6, 123.45)),
+                param(decimal(), "+1.5*2", Value.success(4, 1.5)),
+                param(decimal(), "12.", Value.success(2, 12.0)),
+                param(decimal(), "1e5", Value.success(1, 1.0)),
+                param(decimal(), ".5", Value.failure(0, "a decimal")),
+
+                // jsonNumber
+                param(jsonNumber(), "-0.25e2,", Value.success(7, -25.0)),
+                param(jsonNumber(), "01", Value.success(1, 0.0)),
+                param(jsonNumber(), "1e", Value.success(1, 1.0)),
+                param(jsonNumber(), "1E-3", Value.success(4, 0.001)),
+                param(jsonNumber(), "+1", Value.failure(0, "a json number"))
+        );
+    }
+
+    @Test
+    public void test_numbers_rounding() {
+        final String[] inputs = {
+                "0.1", "0.30000000000000004", "123456789012345678901234567890", "2.2250738585072011e-308",
+                "4.9e-324", "1.7976931348623157e308", "1e400", "9007199254740993", "3.141592653589793238462643383279",
+                "0.000000000000000000000000001", "1000000000000000000000000"
+        };
+        for (String input : inputs) {
+            assertThat(jsonNumber().parseDouble(input), equalTo(Double.parseDouble(input)));
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            final String input = Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7fefffffffffffffL));
+            if (input.contains("E")) {
+                assertThat(jsonNumber().parseDouble(input), equalTo(Double.parseDouble(input)));
+            } else {
+                assertThat(decimal().parseDouble(input), equalTo(Double.parseDouble(input)));
+            }
+        }
+    }
+
+    @Test
+    public void test_primitive_map_fold() {
+        parameterized_test(
+                param(integer().mapToInt(i -> i * 2), "21", Value.success(2, 42)),
+                param(integer().mapToLong(i -> i * 10_000_000_000L), "3", Value.success(1, 30_000_000_000L)),
+                param(long_().mapToDouble(l -> l / 2.0), "3", Value.success(1, 1.5)),
+                param(decimal().mapToObj(d -> d > 0 ? "pos" : "neg"), "-1.5", Value.success(4, "neg")),
+                param(integer().foldSepBy(char_(','), 0, Integer::sum), "1,2,3,4", Value.success(7, 10)),
+                param(integer().foldSepBy(char_(','), 0, Integer::sum), "1,2,", Value.failure(4, "an integer")),
+                param(decimal().skip(spaces()).foldMany(0, Math::max), "1.5 7 -3", Value.success(8, 7.0)),
+                param(long_().skip(char_(';')).foldMany(1, (a, b) -> a * b), "2;3;4", Value.success(4, 6L))
+        );
+
+        assertThat(integer().parseInt("-17"), equalTo(-17));
+    }
+
     @Test
     public void test_skip() {
         parameterized_test(
@@ -286,6 +478,527 @@ public class ParsecTest {
         string("xm").parseStrict("xm and xh");
     }
 
+    @Test
+    public void test_feeder() {
+        final Parsec<List<Integer>> message = char_('[').compose(sepBy(integer(), char_(','))).skip(char_(']'))
+                .map(list -> (List<Integer>) list);
+        final Feeder<List<Integer>> feeder = feeder(message);
+
+        assertThat(feeder.feed("[1,").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        assertThat(feeder.feed(CharBuffer.wrap("23")).status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+
+        final Feeder.Result<List<Integer>> first = feeder.feed("]; [4]");
+        assertThat(first.status, equalTo(Feeder.Status.RESULT));
+        assertThat(first.value, equalTo(asList(1, 23)));
+        assertThat(feeder.buffered(), equalTo(5));
+
+        assertThat(feeder.feed(";").status, equalTo(Feeder.Status.ERROR));
+    }
+
+    @Test
+    public void test_feeder_bytes() {
+        final Feeder<String> feeder = feeder(regex("[^;]*").skip(char_(';')));
+        final byte[] bytes = "小明;".getBytes(StandardCharsets.UTF_8);
+
+        // split inside the first char
+        assertThat(feeder.feed(ByteBuffer.wrap(bytes, 0, 2)).status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        assertThat(feeder.feed(ByteBuffer.wrap(bytes, 2, 4)).status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+
+        // the ; ends the message, nothing looked past it
+        final Feeder.Result<String> res = feeder.feed(ByteBuffer.wrap(bytes, 6, bytes.length - 6));
+        assertThat(res.status, equalTo(Feeder.Status.RESULT));
+        assertThat(res.value, equalTo("小明"));
+        assertThat(feeder.buffered(), equalTo(0));
+    }
+
+    @Test
+    public void test_feeder_hit_end() {
+        // the first alternative runs into the end, though the second one already matches
+        final Feeder<Object> keywords = feeder(tryChoice(string("abc"), string("ab")));
+        assertThat(keywords.feed("ab").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        final Feeder.Result<Object> ab = keywords.feed("x");
+        assertThat(ab.status, equalTo(Feeder.Status.RESULT));
+        assertThat(ab.value, equalTo("ab"));
+        assertThat(keywords.buffered(), equalTo(1));
+
+        final Feeder<String> operators = feeder(literals("<", "<=", "<<"));
+        assertThat(operators.feed("<").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        assertThat(operators.feed("=").value, equalTo("<="));
+
+        final Feeder<Double> number = feeder(jsonNumber());
+        assertThat(number.feed("-").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        assertThat(number.feed("1.5").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        // "e" may start an exponent
+        assertThat(number.feed("e").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        assertThat(number.feed(" ").value, equalTo(-1.5));
+        assertThat(number.end().status, equalTo(Feeder.Status.ERROR));
+
+        // a regex fails at its start index, still waiting for input when it ran out of it
+        final Feeder<String> line = feeder(regex("\\d+;"));
+        assertThat(line.feed("12").status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        assertThat(line.feed("3;").value, equalTo("123;"));
+        assertThat(line.feed("4x").status, equalTo(Feeder.Status.ERROR));
+        assertThat(feeder(regex("\\d+;")).end().status, equalTo(Feeder.Status.ERROR));
+    }
+
+    @Test
+    public void test_feeder_after_error() {
+        final Feeder<String> line = feeder(regex("\\d+;"));
+        assertThat(line.feed("1;").value, equalTo("1;"));
+
+        // the bad input stays buffered, so the error repeats until it is dropped
+        final Feeder.Result<String> bad = line.feed("x2");
+        assertThat(bad.status, equalTo(Feeder.Status.ERROR));
+        assertThat(line.feed("").status, equalTo(Feeder.Status.ERROR));
+
+        line.discard(bad.error.index + 1);
+        assertThat(line.buffered(), equalTo(1));
+        assertThat(line.feed(";").value, equalTo("2;"));
+
+        // reset drops the buffer and the half received bytes, and takes input again after end
+        assertThat(line.feed("y").status, equalTo(Feeder.Status.ERROR));
+        assertThat(line.end().status, equalTo(Feeder.Status.ERROR));
+        line.reset();
+        assertThat(line.buffered(), equalTo(0));
+        assertThat(line.feed(ByteBuffer.wrap(new byte[]{(byte) 0xe5})).status, equalTo(Feeder.Status.NEED_MORE_INPUT));
+        line.reset();
+        assertThat(line.feed(ByteBuffer.wrap("3;".getBytes(StandardCharsets.UTF_8))).value, equalTo("3;"));
+
+        try {
+            line.discard(1);
+            fail("nothing buffered to discard");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void test_position() {
+        final String input = "a = 1\r\nbb = 22\n\nccc = x";
+        final Parsec<List<Positioned<String>>> p = many(withPosition(regex("\\w+")).skip(regex("[ =\\r\\n]*")));
+        final List<Positioned<String>> words = p.parse(input);
+
+        assertThat(words.get(0).start(), equalTo(new SourcePosition(0, 1, 1)));
+        assertThat(words.get(2).start(), equalTo(new SourcePosition(7, 2, 1)));
+        assertThat(words.get(3).end(), equalTo(new SourcePosition(14, 2, 8)));
+        assertThat(words.get(5).start(), equalTo(new SourcePosition(22, 4, 7)));
+        assertThat(LineIndex.of(input).lineCount(), equalTo(4));
+        // one index per parse, not per position nor kept from one parse to the next
+        assertTrue(words.get(0).lines() == words.get(5).lines());
+        assertTrue(p.parse(input).get(0).lines() != words.get(0).lines());
+
+        try {
+            integer().skip(char_('\n')).foldMany(0, Integer::sum).parseStrict("1\n2\nx\n");
+            fail("x is not an integer");
+        } catch (ParseException e) {
+            assertThat(e.index, equalTo(4));
+            assertThat(e.position(), equalTo(new SourcePosition(4, 3, 1)));
+        }
+    }
+
+    @Test
+    public void test_recover() {
+        final Parsec<List> p = sepBy(recover(integer(), oneOf(",\n"), null), oneOf(",\n"));
+
+        final Recovered<List> recovered = p.skip(eof()).parseCollectingErrors("1,x2,3\n4,,5\n6");
+        assertThat(recovered.value, equalTo(asList(1, null, 3, 4, null, 5, 6)));
+        assertThat(recovered.errors.size(), equalTo(2));
+        assertThat(recovered.errors.get(0).position(), equalTo(new SourcePosition(2, 1, 3)));
+        assertThat(recovered.errors.get(1).position(), equalTo(new SourcePosition(9, 2, 3)));
+        assertThat(recovered.truncated, equalTo(false));
+
+        // a failure outside of recover ends the parse, but is still reported with the ones before
+        final Recovered<List> failed = p.skip(eof()).parseCollectingErrors("x,2y");
+        assertThat(failed.value, equalTo(null));
+        assertThat(failed.errors.size(), equalTo(2));
+        assertThat(failed.errors.get(1).expected, equalTo("EOF"));
+
+        final Recovered<List> capped = p.parseCollectingErrors("a,b,c,d", 2);
+        assertThat(capped.errors.size(), equalTo(2));
+        assertThat(capped.truncated, equalTo(true));
+
+        // recovering without consuming, then failing again at the same place, skips the sync match and goes on
+        final Parsec<List<Integer>> statements = many(recover(integer().skip(char_(';')), char_(';'), -1));
+        final Recovered<List<Integer>> empty = statements.skip(eof()).parseCollectingErrors("1;;2;");
+        assertThat(empty.value, equalTo(asList(1, -1, -1, 2)));
+        assertThat(empty.errors.size(), equalTo(1));
+        assertThat(empty.errors.get(0).index, equalTo(2));
+        assertThat(empty.truncated, equalTo(false));
+
+        final Recovered<List> clean = p.parseCollectingErrors("1,2");
+        assertThat(clean.hasErrors(), equalTo(false));
+        assertThat(clean.value, equalTo(asList(1, 2)));
+
+        // plain parse does not recover
+        parameterized_test(
+                param(p, "1,x", Value.failure(2, "an integer"))
+        );
+    }
+
+    @Test
+    public void test_parse_limits() {
+        final Parsec<List<String>> words = many(regex("\\w+").skip(spaces()));
+        assertThat(words.parse("a b c", ParseOptions.defaults().withMaxSteps(100)), equalTo(asList("a", "b", "c")));
+
+        try {
+            words.parse("a b c d e f", ParseOptions.defaults().withMaxSteps(10));
+            fail("steps limit not enforced");
+        } catch (ParseLimitExceededException e) {
+            assertThat(e.limit, equalTo(ParseLimitExceededException.Limit.STEPS));
+            assertThat(e.steps, equalTo(11L));
+        }
+
+        final Parsec p = tryChoice(joint(string("aaaa"), char_('x')), string("aaaab"));
+        assertThat(p.parse("aaaab", ParseOptions.defaults().withMaxBacktrack(4)), equalTo("aaaab"));
+        try {
+            p.parse("aaaab", ParseOptions.defaults().withMaxBacktrack(3));
+            fail("backtrack limit not enforced");
+        } catch (ParseLimitExceededException e) {
+            assertThat(e.limit, equalTo(ParseLimitExceededException.Limit.BACKTRACK));
+            assertThat(e.maxBacktrack, equalTo(4));
+            assertThat(e.index, equalTo(4));
+        }
+
+        final CancellationToken token = new CancellationToken();
+        token.cancel();
+        try {
+            many(char_('a')).parse(String.join("", nCopies(5000, "a")),
+                    ParseOptions.defaults().withCancellation(token));
+            fail("cancellation not noticed");
+        } catch (ParseLimitExceededException e) {
+            assertThat(e.limit, equalTo(ParseLimitExceededException.Limit.CANCELLED));
+        }
+
+        // catastrophic backtracking inside a single regex is stopped by the deadline
+        final String evil = String.join("", nCopies(30, "a")) + "!";
+        try {
+            regex("((a+)+)\\1b").parse(evil, ParseOptions.defaults().withTimeout(50, MILLISECONDS));
+            fail("deadline not enforced");
+        } catch (ParseLimitExceededException e) {
+            assertThat(e.limit, equalTo(ParseLimitExceededException.Limit.DEADLINE));
+        }
+    }
+
+    @Test
+    public void test_parse_context_threads() throws Exception {
+        final Parsec<List<String>> words = many(regex("\\w+").skip(spaces()));
+        final Parsec<List> numbers = sepBy(recover(integer(), char_(','), null), char_(','));
+        final ParseOptions generous = ParseOptions.defaults().withMaxSteps(1000);
+        final ParseOptions tight = ParseOptions.defaults().withMaxSteps(10);
+
+        // virtual threads where the runtime has them, every task a thread of its own
+        ExecutorService pool;
+        try {
+            pool = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            pool = Executors.newFixedThreadPool(16);
+        }
+
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                final int seed = t;
+                results.add(pool.submit(() -> {
+                    int checked = 0;
+                    for (int k = 0; k < 300; k++) {
+                        final int n = (seed + k) % 8 + 1;
+                        final StringBuilder text = new StringBuilder();
+                        final StringBuilder csv = new StringBuilder();
+                        for (int i = 0; i < n; i++) {
+                            text.append("w").append(i).append(' ');
+                            csv.append(i == 0 ? "" : ",").append(i % 2 == 0 ? "x" : String.valueOf(i));
+                        }
+
+                        assertThat(words.parse(text.toString(), generous).size(), equalTo(n));
+                        try {
+                            words.parse("a b c d e f", tight);
+                            fail("steps limit not enforced");
+                        } catch (ParseLimitExceededException e) {
+                            // the steps of this parse only, whatever runs on other threads
+                            assertThat(e.steps, equalTo(11L));
+                        }
+                        assertThat(numbers.parseCollectingErrors(csv.toString()).errors.size(), equalTo((n + 1) / 2));
+                        assertThat(words.parse(text.toString()).size(), equalTo(n));
+                        checked++;
+                    }
+                    return checked;
+                }));
+            }
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), equalTo(300));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(ParseContext.pooled() <= ParseContext.POOL_SIZE);
+        assertTrue(ParseContext.pooled() > 0);
+    }
+
+    @Test
+    public void test_ref() {
+        final Ref<Object> value = ref();
+        final Parsec<List> array = joint(char_('['), sepBy(value, char_(',')), char_(']')).map(list -> (List) list.get(1));
+        value.set(choice(array, integer()));
+
+        parameterized_test(
+                param(value, "[1,[2,[3]],4]", Value.success(13, asList(1, asList(2, singletonList(3)), 4))),
+                param(value, "[1,[2,", Value.failure(6, "[[, an integer]"))
+        );
+
+        try {
+            value.set(integer());
+            fail("ref set twice");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        try {
+            Parsec.<Object>ref().parse("1");
+            fail("unset ref parsed");
+        } catch (IllegalStateException ignored) {
+        }
+
+        final AtomicInteger supplied = new AtomicInteger();
+        final Parsec<List<Integer>> digits = lazy(() -> {
+            supplied.incrementAndGet();
+            return many(integer().skip(spaces()));
+        });
+        assertThat(digits.parse("1 2"), equalTo(asList(1, 2)));
+        assertThat(digits.parse("3"), equalTo(singletonList(3)));
+        assertThat(supplied.get(), equalTo(1));
+
+        // refs are seen through by lint, the left recursion below only exists through one
+        final Ref<Object> expr = ref();
+        expr.set(choice(joint(expr, char_('+'), integer()), integer()));
+        final LintReport leftRecursive = lint(expr);
+        assertThat(leftRecursive.findings.get(0).hazard, equalTo(LintReport.Hazard.LEFT_RECURSION));
+        assertThat(lint(value).isClean(), equalTo(true));
+    }
+
+    @Test
+    public void test_lint() {
+        assertThat(lint(sepBy(integer(), char_(','))).isClean(), equalTo(true));
+        assertThat(lint(many(digit())).isClean(), equalTo(true));
+
+        final LintReport loops = lint(many(optional(char_('x'))));
+        assertThat(loops.findings.size(), equalTo(1));
+        assertThat(loops.findings.get(0).hazard, equalTo(LintReport.Hazard.NON_CONSUMING_REPETITION));
+        assertThat(loops.findings.get(0).cost, equalTo(LintReport.Cost.NON_TERMINATING));
+        assertThat(loops.findings.get(0).path, equalTo("times"));
+
+        // a recover can succeed empty, but runs again at the same index and then moves on
+        final LintReport recovering = lint(many(recover(integer().skip(char_(';')), char_(';'), -1)));
+        assertThat(recovering.findings.size(), equalTo(1));
+        assertThat(recovering.findings.get(0).hazard, equalTo(LintReport.Hazard.NON_CONSUMING_REPETITION));
+        assertThat(recovering.findings.get(0).cost, equalTo(LintReport.Cost.LINEAR));
+        assertThat(lint(sepBy(recover(integer(), char_(','), null), char_(','))).isClean(), equalTo(true));
+        assertThat(lint(many(recover(optional(char_('x')), char_(';'), null))).findings.get(0).cost,
+                equalTo(LintReport.Cost.NON_TERMINATING));
+
+        final LintReport unreachable = lint(choice(string("a"), string("ab"), optional(string("c")), string("d")));
+        assertThat(unreachable.findings.size(), equalTo(2));
+        assertThat(unreachable.findings.get(0).hazard, equalTo(LintReport.Hazard.UNREACHABLE_ALTERNATIVE));
+        assertThat(unreachable.findings.get(0).message.contains("#2"), equalTo(true));
+        assertThat(unreachable.findings.get(1).message.contains("#4"), equalTo(true));
+
+        final Parsec<String> name = regex("[a-z]+");
+        final LintReport prefix = lint(many(tryChoice(joint(name, char_('(')), joint(name, char_('[')), name)));
+        assertThat(prefix.findings.size(), equalTo(2));
+        assertThat(prefix.findings.get(0).hazard, equalTo(LintReport.Hazard.SHARED_PREFIX));
+        assertThat(prefix.findings.get(0).cost, equalTo(LintReport.Cost.QUADRATIC));
+
+        final LintReport noBacktrack = lint(choice(joint(string("let"), char_(' ')), joint(string("let"), char_('!'))));
+        assertThat(noBacktrack.findings.size(), equalTo(1));
+        assertThat(noBacktrack.findings.get(0).hazard, equalTo(LintReport.Hazard.UNREACHABLE_ALTERNATIVE));
+
+        final LintReport partial = lint(choice(string("abc"), string("abd")));
+        assertThat(partial.findings.size(), equalTo(1));
+        assertThat(partial.findings.get(0).hazard, equalTo(LintReport.Hazard.UNREACHABLE_ALTERNATIVE));
+        assertThat(partial.findings.get(0).message.contains("\"ab\""), equalTo(true));
+        assertThat(lint(tryChoice(string("abc"), string("abd"))).isClean(), equalTo(true));
+
+        final LintReport regexes = lint(joint(regex(Pattern.compile("\\d+")), regex("(a+)+b")));
+        assertThat(regexes.findings.size(), equalTo(2));
+        assertThat(regexes.findings.get(0).hazard, equalTo(LintReport.Hazard.NESTED_QUANTIFIER));
+        assertThat(regexes.findings.get(1).hazard, equalTo(LintReport.Hazard.UNANCHORED_REGEX));
+    }
+
+    @Test
+    public void test_generate() throws Exception {
+        final Skipper ignore = withSkipper(" \t\n", lineComment("#"), blockComment("/*", "*/"));
+        final Parsec<?> item = tryChoice(
+                joint(ignore.jsonNumber(), optional(ignore.literals("px", "em", "%", "e", "emx"))),
+                ignore.token(joint(letter(), many(oneOf("_-'\"")), regex("\\w*"))),
+                ignore.token(joint(char_('<'), ignore.integer(), count(digit(), 2), char_('>'))),
+                ignore.string("null")
+        );
+        final Parsec<?> grammar = joint(ignore.spaces(), choice(
+                joint(ignore.char_('['), sepBy(item, ignore.char_(',')), ignore.char_(']')),
+                times(ignore.token(noneOf("[]{}")), 1, 3)
+        ), eof());
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return;
+        }
+
+        final Path dir = Files.createTempDirectory("generated");
+        final Path source = dir.resolve("gen").resolve("ItemsRecognizer.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, ParserGenerator.generate(grammar, "gen", "ItemsRecognizer").getBytes(StandardCharsets.UTF_8));
+        assertThat(compiler.run(null, null, null, "-d", dir.toString(), source.toString()), equalTo(0));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()})) {
+            final Method match = loader.loadClass("gen.ItemsRecognizer").getMethod("match", String.class, int.class);
+            final Method check = loader.loadClass("gen.ItemsRecognizer").getMethod("check", String.class);
+            for (String input : asList(
+                    " [1.5px, -2e3 , abc_'x9, <12 34>, null /* c */ ] # end",
+                    "[0, 1 em,x,<-7 00>]", "[]", "[ 01 ]", "[1,", "[<99999999999 00>]", "[nul]",
+                    "abc", "a b c d", "", "[1 /* open", "[a\"b]", "[<1 0>]", "[1e, 2emx, 3em, 4emy]")) {
+                final Value<?> v = grammar._parse(input, 0);
+                assertThat(input, match.invoke(null, input, 0), equalTo(v.status ? v.index : -1 - v.index));
+                if (!v.status) {
+                    try {
+                        check.invoke(null, input);
+                        fail();
+                    } catch (InvocationTargetException e) {
+                        assertThat(e.getCause().getMessage(), equalTo("expect: " + v.expected + " on input index: " + v.index));
+                    }
+                }
+            }
+        }
+
+        // simple regexes become loops, the rest stays on the matcher, either way ending where the combinators do
+        final List<Parsec<String>> regexes = asList(regex("[a-z_][\\w-]*"), regex("-?\\d+\\.?"), regex("\\d+\\.?\\d*"), regex("[^;\\]]*;"),
+                regex("\\s*[+\\-]?x{2,3}"), regex(".+"), regex("."), regex("\\w*x"), regex("(ab)+"), regex("a{2}?"));
+        final List<String> sources = new ArrayList<>(singletonList("-d"));
+        sources.add(dir.toString());
+        int matchers = 0;
+        for (int i = 0; i < regexes.size(); i++) {
+            final String code = ParserGenerator.generate(regexes.get(i), "gen", "Regex" + i);
+            matchers += code.contains("Pattern.compile") ? 1 : 0;
+            final Path file = dir.resolve("gen").resolve("Regex" + i + ".java");
+            Files.write(file, code.getBytes(StandardCharsets.UTF_8));
+            sources.add(file.toString());
+        }
+        assertThat(matchers, equalTo(5));
+        assertThat(compiler.run(null, null, null, sources.toArray(new String[0])), equalTo(0));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()})) {
+            for (int i = 0; i < regexes.size(); i++) {
+                final Method match = loader.loadClass("gen.Regex" + i).getMethod("match", String.class, int.class);
+                for (String input : asList("", "ab_-c d", "_", "9a", "12.5x", "12.", "-7", "-", ";", "a b];", "a];",
+                        "  -xxxx", "+xx", "x", "\uD83D\uDE00!", "\uD83D", "\nx", "abx", "ababa", "aaa", "a")) {
+                    final Value<?> v = regexes.get(i)._parse(input, 0);
+                    assertThat(regexes.get(i) + " on " + input, match.invoke(null, input, 0),
+                            equalTo(v.status ? v.index : -1 - v.index));
+                }
+            }
+        }
+
+        try {
+            ParserGenerator.generate(joint(char_('a'), (input, index) -> Value.success(index, null)), "", "X");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), equalTo("can not generate joint > <opaque>: a parser written as a plain lambda"));
+        }
+    }
+
+    @Test
+    public void test_cached() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        final Parsec<Integer> counted = (input, index) -> {
+            parses.incrementAndGet();
+            return integer()._parse(input, index);
+        };
+
+        final CachingParser<Integer> cache = cached(counted, 2);
+        assertThat(cache.parse("1"), equalTo(1));
+        assertThat(cache.parse("1"), equalTo(1));
+        assertThat(cache.parse("2"), equalTo(2));
+        assertThat(cache.parse("1"), equalTo(1));
+        assertThat(cache.parse("3"), equalTo(3));
+        // 1 was used after 2, so 3 evicted 2
+        assertThat(cache.parse("1"), equalTo(1));
+        assertThat(cache.parse("2"), equalTo(2));
+        assertThat(parses.get(), equalTo(4));
+        assertThat(cache.hits(), equalTo(3L));
+        assertThat(cache.misses(), equalTo(4L));
+        assertThat(cache.evictions(), equalTo(2L));
+        assertThat(cache.size(), equalTo(2));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.parse("x");
+                fail();
+            } catch (ParseException e) {
+                assertThat(e.index, equalTo(0));
+            }
+        }
+        assertThat(parses.get(), equalTo(6));
+
+        // a small cache is a single lru: all 16 inputs stay, then the least recently used one goes first
+        final AtomicInteger lruParses = new AtomicInteger();
+        final CachingParser<Integer> lru = cached((input, index) -> {
+            lruParses.incrementAndGet();
+            return integer()._parse(input, index);
+        }, 16);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 16; i++) {
+                assertThat(lru.parse(String.valueOf(i)), equalTo(i));
+            }
+        }
+        assertThat(lruParses.get(), equalTo(16));
+        assertThat(lru.evictions(), equalTo(0L));
+        // 0 is used again, so 16 evicts 1
+        assertThat(lru.parse("0"), equalTo(0));
+        assertThat(lru.parse("16"), equalTo(16));
+        assertThat(lru.parse("0"), equalTo(0));
+        assertThat(lru.parse("2"), equalTo(2));
+        assertThat(lruParses.get(), equalTo(17));
+        assertThat(lru.parse("1"), equalTo(1));
+        assertThat(lruParses.get(), equalTo(18));
+
+        final CachingParser<Integer> failures = new CachingParser<>(counted, 16, 3, true);
+        for (String input : asList("x", "x", "1234", "1234")) {
+            try {
+                failures.parse(input);
+            } catch (ParseException ignored) {
+            }
+        }
+        assertThat(parses.get(), equalTo(9));
+        assertThat(failures.bypassed(), equalTo(2L));
+        assertThat(failures.hits(), equalTo(1L));
+
+        // concurrent misses on one input share a single parse
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger slowParses = new AtomicInteger();
+        final CachingParser<Integer> slow = cached((input, index) -> {
+            slowParses.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return integer()._parse(input, index);
+        }, 16);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.submit(() -> slow.parse("42")));
+        }
+        while (slow.collapsed() < 3) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Future<Integer> result : results) {
+            assertThat(result.get(), equalTo(42));
+        }
+        pool.shutdown();
+        assertThat(slowParses.get(), equalTo(1));
+        assertThat(slow.misses(), equalTo(4L));
+    }
+
     @Test
     public void test_hashCode() {
         final HashMap<Value, Object> map = new HashMap<>();
@@ -1,13 +1,16 @@
 package xin.calc;
 
 import xin.Parsec;
+import xin.Skipper;
 
 import static xin.Parsec.*;
 
 public class Calculator {
 
+    private static final Skipper ignore = withSkipper(" \t\r\n");
+
     private static <T> Parsec<T> lexeme(Parsec<T> p) {
-        return p.skip(spaces());
+        return ignore.token(p);
     }
 
     static final Parsec<Character> add = lexeme(char_('+'));
@@ -18,6 +21,6 @@ public class Calculator {
     static final Parsec<Character> lparen = lexeme(char_('('));
     static final Parsec<Character> rparen = lexeme(char_(')'));
 
-    static final Parsec<Double> num = lexeme(regex("[+-]?\\d+(\\.\\d+)?")).map(Double::parseDouble);
+    static final Parsec<Double> num = ignore.decimal();
     
 }
@@ -1,6 +1,8 @@
 package xin.json;
 
 import xin.Parsec;
+import xin.Ref;
+import xin.Skipper;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -11,10 +13,10 @@ import static xin.Parsec.*;
 
 public class JsonParser {
 
-    private static final Parsec<String> ignore = spaces();
+    private static final Skipper ignore = withSkipper(" \t\r\n");
 
     private static <T> Parsec<T> lexeme(Parsec<T> parsec) {
-        return parsec.skip(ignore);
+        return ignore.token(parsec);
     }
 
     private static final Parsec<String> lbrace = lexeme(string("{"));
@@ -28,7 +30,7 @@ public class JsonParser {
     private static final Parsec<Boolean> false_ = lexeme(string("false")).result(false);
     private static final Parsec<Object> null_ = lexeme(string("null")).result(null);
 
-    private static final Parsec<Double> number = lexeme(regex("-?(0|[1-9][0-9]*)([.][0-9]+)?([eE][+-]?[0-9]+)?")).map(Double::parseDouble);
+    private static final Parsec<Double> number = ignore.jsonNumber();
 
     private static Parsec<String> charSeq() {
         final Parsec<String> string_part = regex("[^\"\\\\]");
@@ -48,47 +50,46 @@ public class JsonParser {
         return choice(string_part, string_esc);
     }
 
-    private static Parsec<String> quoted() {
-        return joint(string("\""), many(charSeq()), string("\""))
-                .map(list -> {
-                    assert list.size() >= 2;
-                    final List<String> strings = (List<String>) list.get(1);
-                    return strings.stream()
-                            .collect(Collectors.joining());
-                });
-    }
-
-    private static Parsec value() {
-        return choice(quoted(), number, jsonObject(), array(), true_, false_, null_);
-    }
-
-    private static final Parsec value = value();
-
-    private static Parsec<Pair<String, Object>> object_pair() {
-        return joint(quoted(), colon, value)
-                .map(list -> {
-                    final String key = ((String) list.get(0));
-                    final Object value = list.get(2);
-                    return new Pair<>(key, value);
-                });
-    }
-
-    private static Parsec<List> array() {
-        return joint(lbrack, sepBy(value, comma), rbrack)
-                .map(list -> ((List) list.get(1)));
-    }
-
-    private static Parsec<Map<String, Object>> jsonObject() {
-        return joint(lbrace, sepBy(object_pair(), comma), rbrace)
-                .map(list -> {
-                    final List<Pair<String, Object>> pairs = (List<Pair<String, Object>>) list.get(0);
-                    final Map<String, Object> result = new LinkedHashMap<>();
-                    for (Pair<String, Object> pair : pairs) {
-                        result.put(pair.first, pair.second);
-                    }
-
-                    return result;
-                });
+    private static final Parsec<String> quoted = joint(string("\""), many(charSeq()), string("\""))
+            .map(list -> {
+                assert list.size() >= 2;
+                final List<String> strings = (List<String>) list.get(1);
+                return strings.stream()
+                        .collect(Collectors.joining());
+            });
+
+    // keys without escapes are interned straight from the input, the rest goes through quoted
+    private static final Parsec<String> key = lexeme(tryChoice(
+            string("\"").compose(intern(regexSlice("[^\"\\\\]*"))).skip(string("\"")),
+            quoted));
+
+    // arrays and objects contain values, so value is referenced before it is defined below them
+    static final Ref<Object> value = ref();
+
+    private static final Parsec<Pair<String, Object>> object_pair = joint(key, colon, value)
+            .map(list -> {
+                final String key = ((String) list.get(0));
+                final Object value = list.get(2);
+                return new Pair<>(key, value);
+            });
+
+    private static final Parsec<List> array = joint(lbrack, sepBy(value, comma), rbrack)
+            .map(list -> ((List) list.get(1)));
+
+    private static final Parsec<Map<String, Object>> jsonObject = joint(lbrace, sepBy(object_pair, comma), rbrace)
+            .map(list -> {
+                final List<Pair<String, Object>> pairs = (List<Pair<String, Object>>) list.get(1);
+                final Map<String, Object> result = new LinkedHashMap<>();
+                for (Pair<String, Object> pair : pairs) {
+                    result.put(pair.first, pair.second);
+                }
+
+                return result;
+            });
+
+    static {
+        //noinspection unchecked
+        value.set(choice(lexeme(quoted), number, jsonObject, array, true_, false_, null_));
     }
 
     static class Pair<A, B> {
@@ -102,20 +103,7 @@ public class JsonParser {
     }
 
     public static void main(String[] args) {
-
-//        final Value<String> _parse = regex("\\d+")._parse("1234abc", 0);
-//        System.out.println("_parse = " + _parse);
-//
-//        final Value<Double> parse1 = number._parse("1231", 0);
-//        System.out.println("parse1 = " + parse1);
-//
-//        final Value<List> parse2 = sepBy(number, comma)._parse("12, 23, 34", 0);
-//        System.out.println("parse2 = " + parse2);
-//
-//        final Value<List> parse3 = array()._parse("[21, 12, 23]", 0);
-//        System.out.println("parse3 = " + parse3);
-
-        final Value<Map<String, Object>> result = jsonObject()._parse("{\"a\" : [1,2,3,4] }", 0);
+        final Object result = value.parse("{\"a\" : [1,2,3,4], \"b\" : \"x\" }");
         System.out.println("result = " + result);
     }
 }